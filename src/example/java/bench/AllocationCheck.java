@@ -0,0 +1,188 @@
+package bench;
+
+import com.github.natanbc.pratt.DefaultCharacterStream;
+import com.github.natanbc.pratt.EventSink;
+import com.github.natanbc.pratt.Lexer;
+import com.github.natanbc.pratt.TokenKind;
+import discord.DiscordParser;
+import math.ArenaMathParser;
+import math.MathEventParser;
+import math.MathLexer;
+import math.MathParser;
+import math.MathTokenKind;
+import math.ast.NodeArena;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures the bytes allocated by the hot paths, per unit of work, and compares them
+ * against fixed budgets. The budgets are enforced by {@code AllocationBudgetTest} in the
+ * test suite, one test per check; running this class prints every measurement instead.
+ *
+ * <br>Each check runs a fixed input enough times for the JIT to compile it, then measures
+ * the bytes allocated by the current thread with {@code com.sun.management.ThreadMXBean}.
+ * Budgets are per unit of work (character, token or mention), with headroom over the
+ * measured values so JVM differences don't cause failures.
+ */
+public class AllocationCheck {
+    private static final int WARMUP = 2000;
+    private static final int RUNS = 500;
+    private static final String EXPRESSION = Corpus.mathMixed(new Random(0), 200);
+    private static final String CHAIN = Corpus.mathChain(new Random(0), 200);
+    //keeps results alive so the JIT can't remove the work being measured
+    private static volatile long blackhole;
+    
+    private AllocationCheck() {}
+    
+    public static void main(String[] args) {
+        if(!supported()) {
+            System.out.println("Allocation measurement not supported by this JVM");
+            return;
+        }
+        System.out.printf("%-34s %14s %14s%n", "check", "bytes/unit", "budget");
+        for(Check c : all()) {
+            double perUnit = measure(c);
+            System.out.printf("%-34s %14.1f %14s%s%n", c.name, perUnit, c.budget + "/" + c.unit,
+                    perUnit <= c.budget ? "" : "  OVER BUDGET");
+        }
+    }
+    
+    static List<Check> all() {
+        return Arrays.asList(streamRead(), lexerNext(), mathParser(), arenaParser(), eventParser(), discordParser());
+    }
+    
+    //reading characters from an already loaded stream must not allocate
+    static Check streamRead() {
+        DefaultCharacterStream stream = new DefaultCharacterStream(new StringReader(EXPRESSION));
+        return new Check("DefaultCharacterStream.read", "char", 0, EXPRESSION.length(), () -> {
+            stream.backTo(1, 0);
+            long sum = 0;
+            int ch;
+            while((ch = stream.read(false)) != -1) {
+                sum += ch;
+            }
+            return sum;
+        });
+    }
+    
+    //a token, its position and its value
+    static Check lexerNext() {
+        MathLexer lexer = new MathLexer(new StringReader(""));
+        return new Check("Lexer.next", "token", 112, countTokens(EXPRESSION), () -> {
+            lexer.reset(new StringReader(EXPRESSION));
+            long n = 0;
+            while(lexer.next().kind() != MathTokenKind.EOF) {
+                n++;
+            }
+            return n;
+        });
+    }
+    
+    //lexing plus one node per token
+    static Check mathParser() {
+        MathParser math = new MathParser("");
+        return new Check("MathParser.parseExpression", "token", 192, countTokens(EXPRESSION), () -> {
+            math.reset(EXPRESSION);
+            return Double.doubleToLongBits(math.parseExpression(null).eval());
+        });
+    }
+    
+    //lexing only, nodes go to a reused arena
+    static Check arenaParser() {
+        ArenaMathParser arena = new ArenaMathParser("");
+        NodeArena nodes = new NodeArena();
+        return new Check("ArenaMathParser.parseExpression", "token", 144, countTokens(CHAIN), () -> {
+            arena.reset(CHAIN);
+            nodes.clear();
+            return arena.parseExpression(nodes).size();
+        });
+    }
+    
+    //lexing only, events go to a reused sink
+    static Check eventParser() {
+        MathEventParser events = new MathEventParser(new MathLexer(new StringReader("")));
+        EventSink sink = new EventSink() {};
+        return new Check("MathEventParser.parseExpression", "token", 128, countTokens(EXPRESSION), () -> {
+            events.reset(new StringReader(EXPRESSION));
+            return events.parseExpression(sink).hashCode();
+        });
+    }
+    
+    //a whole mention, with its tokens and entity
+    static Check discordParser() {
+        DiscordParser discord = new DiscordParser("");
+        return new Check("DiscordParser.parseExpression", "mention", 1024, 1, () -> {
+            discord.reset("<@!123456789012345678>");
+            return discord.parseExpression(null).hashCode();
+        });
+    }
+    
+    /**
+     * @return Whether or not this JVM can measure the bytes allocated by a thread.
+     */
+    static boolean supported() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean &&
+                ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported();
+    }
+    
+    /**
+     * Warms up a check, then measures it.
+     *
+     * @param check Check to run.
+     *
+     * @return Bytes allocated per unit of work.
+     *
+     * @throws UnsupportedOperationException If this JVM can't measure allocations.
+     */
+    static double measure(Check check) {
+        if(!supported()) {
+            throw new UnsupportedOperationException("Allocation measurement not supported by this JVM");
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long id = Thread.currentThread().getId();
+        long sink = 0;
+        for(int i = 0; i < WARMUP; i++) {
+            sink += check.run.getAsLong();
+        }
+        long before = threads.getThreadAllocatedBytes(id);
+        for(int i = 0; i < RUNS; i++) {
+            sink += check.run.getAsLong();
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        blackhole = sink;
+        return (double)allocated / RUNS / check.units;
+    }
+    
+    private static int countTokens(String expression) {
+        Lexer lexer = new MathLexer(new StringReader(expression));
+        TokenKind eof = lexer.eofKind();
+        int n = 0;
+        while(lexer.next().kind() != eof) {
+            n++;
+        }
+        return n;
+    }
+    
+    static final class Check {
+        final String name;
+        final String unit;
+        final int budget;
+        final int units;
+        private final LongSupplier run;
+    
+        Check(String name, String unit, int budget, int units, LongSupplier run) {
+            this.name = name;
+            this.unit = unit;
+            this.budget = budget;
+            this.units = units;
+            this.run = run;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package bench;
+
+import discord.DiscordParser;
+import discord.LongHashSet;
+import discord.MentionFilter;
+import discord.entity.Entity;
+import math.ArenaMathParser;
+import math.MathParser;
+import math.ast.NodeArena;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Runs the example grammars over a {@link Corpus generated corpus} of growing sizes, and
+ * compares the results against a baseline file from a previous run. The baseline is
+ * replaced by the new results, unless a regression is found.
+ *
+ * <br>Usage: {@code Benchmark <baseline file> [--threshold=0.10] [--seed=0] [--time=500] [--force]}
+ *
+ * <ul>
+ *     <li>{@code threshold}: how much slower than the baseline a case can be before being flagged.</li>
+ *     <li>{@code seed}: seed for the corpus. Results are only comparable with the same seed.</li>
+ *     <li>{@code time}: milliseconds spent measuring each case, after the same time warming up.</li>
+ *     <li>{@code force}: replace the baseline even if regressions are found.</li>
+ * </ul>
+ *
+ * Exits with status 1 if any regression is found.
+ */
+public class Benchmark {
+    private static final int BATCHES = 10;
+    
+    private final List<Case> cases = new ArrayList<>();
+    
+    private Benchmark(long seed) {
+        MathParser math = new MathParser("");
+        ArenaMathParser arena = new ArenaMathParser("");
+        NodeArena nodes = new NodeArena();
+        DiscordParser discord = new DiscordParser("");
+        MentionFilter filter = filter(new Random(seed), 100_000);
+        for(int size : new int[] { 100, 1000, 10000 }) {
+            add("math.chain." + size, Corpus.mathChain(new Random(seed), size), input -> {
+                math.reset(input);
+                return Double.doubleToLongBits(math.parseExpression(null).eval());
+            });
+            add("math.arena.chain." + size, Corpus.mathChain(new Random(seed), size), input -> {
+                arena.reset(input);
+                nodes.clear();
+                return arena.parseExpression(nodes).size();
+            });
+            add("math.nested." + size / 10, Corpus.mathNested(new Random(seed), size / 10), input -> {
+                math.reset(input);
+                return Double.doubleToLongBits(math.parseExpression(null).eval());
+            });
+            add("math.mixed." + size, Corpus.mathMixed(new Random(seed), size), input -> {
+                math.reset(input);
+                return Double.doubleToLongBits(math.parseExpression(null).eval());
+            });
+            add("discord.few." + size, Corpus.discordMessage(new Random(seed), size, 0.02), input -> mentions(discord, input, null));
+            add("discord.many." + size, Corpus.discordMessage(new Random(seed), size, 0.5), input -> mentions(discord, input, null));
+            add("discord.filter." + size, Corpus.discordMessage(new Random(seed), size, 0.5), input -> mentions(discord, input, filter));
+        }
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Path baseline = null;
+        double threshold = 0.10;
+        long seed = 0;
+        long time = 500;
+        boolean force = false;
+        for(String arg : args) {
+            if(arg.startsWith("--threshold=")) {
+                threshold = Double.parseDouble(arg.substring("--threshold=".length()));
+            } else if(arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if(arg.startsWith("--time=")) {
+                time = Long.parseLong(arg.substring("--time=".length()));
+            } else if(arg.equals("--force")) {
+                force = true;
+            } else {
+                baseline = Paths.get(arg);
+            }
+        }
+        if(baseline == null) {
+            System.err.println("Usage: Benchmark <baseline file> [--threshold=0.10] [--seed=0] [--time=500] [--force]");
+            System.exit(2);
+        }
+        Map<String, Double> previous = read(baseline, seed);
+        Map<String, Double> results = new TreeMap<>();
+        int regressions = 0;
+        System.out.printf("%-26s %14s %14s %9s%n", "case", "ns/op", "baseline", "change");
+        for(Case c : new Benchmark(seed).cases) {
+            double nanos = c.measure(time);
+            results.put(c.name, nanos);
+            Double old = previous.get(c.name);
+            String flag = "";
+            if(old != null && nanos > old * (1 + threshold)) {
+                flag = "  REGRESSION";
+                regressions++;
+            }
+            System.out.printf("%-26s %14.0f %14s %9s%s%n", c.name, nanos,
+                    old == null ? "-" : String.format("%.0f", old),
+                    old == null ? "-" : String.format("%+.1f%%", (nanos / old - 1) * 100), flag);
+        }
+        if(regressions > 0 && !force) {
+            System.out.println(regressions + " regression(s) found, baseline not updated (use --force to replace it)");
+            System.exit(1);
+        }
+        write(baseline, seed, results);
+        System.out.println("Baseline written to " + baseline);
+    }
+    
+    private static long mentions(DiscordParser parser, String message, MentionFilter filter) {
+        long count = 0;
+        int start = message.indexOf('<');
+        while(start != -1) {
+            int end = message.indexOf('>', start);
+            if(end == -1) break;
+            parser.reset(message.substring(start, end + 1));
+            Entity mention = parser.parseExpression(null);
+            if(filter == null || filter.test(mention)) {
+                count++;
+            }
+            start = message.indexOf('<', end);
+        }
+        return count;
+    }
+    
+    private static MentionFilter filter(Random random, int size) {
+        LongHashSet blockedUsers = new LongHashSet(size);
+        LongHashSet allowedRoles = new LongHashSet(size);
+        for(int i = 0; i < size; i++) {
+            blockedUsers.add((random.nextLong() >>> 8) + 100_000_000_000_000L);
+            allowedRoles.add((random.nextLong() >>> 8) + 100_000_000_000_000L);
+        }
+        return new MentionFilter(blockedUsers, allowedRoles, null);
+    }
+    
+    private void add(String name, String input, ToLongFunction<String> run) {
+        cases.add(new Case(name, input, run));
+    }
+    
+    private static Map<String, Double> read(Path file, long seed) throws IOException {
+        Map<String, Double> map = new TreeMap<>();
+        if(!Files.exists(file)) {
+            return map;
+        }
+        Properties properties = new Properties();
+        try(Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(r);
+        }
+        if(!String.valueOf(seed).equals(properties.getProperty("seed"))) {
+            System.out.println("Baseline was created with another seed, ignoring it");
+            return map;
+        }
+        for(String name : properties.stringPropertyNames()) {
+            if(!name.equals("seed")) {
+                map.put(name, Double.parseDouble(properties.getProperty(name)));
+            }
+        }
+        return map;
+    }
+    
+    private static void write(Path file, long seed, Map<String, Double> results) throws IOException {
+        if(file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        try(Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("# ns/op per case, written by bench.Benchmark\n");
+            w.write("seed=" + seed + "\n");
+            for(Map.Entry<String, Double> e : results.entrySet()) {
+                w.write(e.getKey() + "=" + String.format("%.1f", e.getValue()) + "\n");
+            }
+        }
+    }
+    
+    private static class Case {
+        private final String name;
+        private final String input;
+        private final ToLongFunction<String> run;
+        //consumed so the JIT can't discard the work
+        private long sink;
+    
+        Case(String name, String input, ToLongFunction<String> run) {
+            this.name = name;
+            this.input = input;
+            this.run = run;
+        }
+    
+        /**
+         * Warms up, then runs batches for the given time and returns the median ns/op of the batches.
+         */
+        double measure(long millis) {
+            long warmupEnd = System.nanoTime() + millis * 1_000_000;
+            long ops = 0;
+            while(System.nanoTime() < warmupEnd) {
+                sink += run.applyAsLong(input);
+                ops++;
+            }
+            long perBatch = Math.max(1, ops / BATCHES);
+            double[] batches = new double[BATCHES];
+            for(int b = 0; b < BATCHES; b++) {
+                long start = System.nanoTime();
+                for(long i = 0; i < perBatch; i++) {
+                    sink += run.applyAsLong(input);
+                }
+                batches[b] = (double)(System.nanoTime() - start) / perBatch;
+            }
+            Arrays.sort(batches);
+            if(sink == 42) {
+                System.out.print("");
+            }
+            return batches[BATCHES / 2];
+        }
+    }
+}
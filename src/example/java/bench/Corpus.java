@@ -0,0 +1,157 @@
+package bench;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Generates seeded random inputs for the example grammars, with controlled size and shape.
+ * The same seed always produces the same input.
+ */
+public final class Corpus {
+    private static final String[] WORDS = {
+            "hello", "there", "the", "parser", "is", "fast", "check", "this", "out", "lol", "ok", "sure"
+    };
+    private static final char[] OPERATORS = { '+', '-', '*', '/' };
+    
+    private Corpus() {}
+    
+    /**
+     * @param random Source of randomness.
+     * @param operators Number of binary operators.
+     *
+     * @return A flat chain of numbers and operators, such as {@code 1.5 * 3 - 2}.
+     */
+    @Nonnull
+    public static String mathChain(@Nonnull Random random, @Nonnegative int operators) {
+        StringBuilder sb = new StringBuilder();
+        number(random, sb);
+        for(int i = 0; i < operators; i++) {
+            sb.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            number(random, sb);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * @param random Source of randomness.
+     * @param depth Number of nested parenthesis.
+     *
+     * @return An expression nested {@code depth} levels deep, such as {@code (1 + (2 * (3)))}.
+     */
+    @Nonnull
+    public static String mathNested(@Nonnull Random random, @Nonnegative int depth) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < depth; i++) {
+            number(random, sb);
+            sb.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(" (");
+        }
+        number(random, sb);
+        for(int i = 0; i < depth; i++) {
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * @param random Source of randomness.
+     * @param operators Approximate number of operators.
+     *
+     * @return An expression mixing operators, negation and shallow parenthesis.
+     */
+    @Nonnull
+    public static String mathMixed(@Nonnull Random random, @Nonnegative int operators) {
+        StringBuilder sb = new StringBuilder();
+        int open = 0;
+        for(int i = 0; i <= operators; i++) {
+            if(i > 0) {
+                sb.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            }
+            if(random.nextInt(8) == 0) {
+                sb.append('-');
+            }
+            if(open < 8 && random.nextInt(6) == 0) {
+                sb.append('(');
+                open++;
+            }
+            number(random, sb);
+            if(open > 0 && random.nextInt(4) == 0) {
+                sb.append(')');
+                open--;
+            }
+        }
+        for(; open > 0; open--) {
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * @param random Source of randomness.
+     * @param length Approximate length of the message, in characters.
+     * @param mentionRatio Chance of each word being a mention instead, between 0 and 1.
+     *
+     * @return A chat message with words and mentions, such as {@code hello <@!1234> check <#5678>}.
+     */
+    @Nonnull
+    public static String discordMessage(@Nonnull Random random, @Nonnegative int length, double mentionRatio) {
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < length) {
+            if(sb.length() > 0) {
+                sb.append(' ');
+            }
+            if(random.nextDouble() < mentionRatio) {
+                long id = (random.nextLong() >>> 8) + 100_000_000_000_000L;
+                switch(random.nextInt(6)) {
+                    case 0: sb.append("<@").append(id).append('>'); break;
+                    case 1: sb.append("<@!").append(id).append('>'); break;
+                    case 2: sb.append("<@&").append(id).append('>'); break;
+                    case 3: sb.append("<#").append(id).append('>'); break;
+                    case 4: sb.append("<:").append(WORDS[random.nextInt(WORDS.length)]).append(':').append(id).append('>'); break;
+                    default: sb.append("<a:").append(WORDS[random.nextInt(WORDS.length)]).append(':').append(id).append('>'); break;
+                }
+            } else {
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+        }
+        return sb.toString();
+    }
+    
+    private static void number(Random random, StringBuilder sb) {
+        sb.append(random.nextInt(1000));
+        if(random.nextBoolean()) {
+            sb.append('.').append(random.nextInt(100));
+        }
+    }
+    
+    /**
+     * Writes a corpus with every shape to a directory.
+     *
+     * <br>Usage: {@code Corpus <directory> [seed]}
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("Usage: Corpus <directory> [seed]");
+            System.exit(2);
+        }
+        Path dir = Paths.get(args[0]);
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        Files.createDirectories(dir);
+        for(int size : new int[] { 100, 1000, 10000 }) {
+            write(dir.resolve("math-chain-" + size + ".txt"), mathChain(new Random(seed), size));
+            write(dir.resolve("math-nested-" + size / 10 + ".txt"), mathNested(new Random(seed), size / 10));
+            write(dir.resolve("math-mixed-" + size + ".txt"), mathMixed(new Random(seed), size));
+            write(dir.resolve("discord-few-" + size + ".txt"), discordMessage(new Random(seed), size, 0.02));
+            write(dir.resolve("discord-many-" + size + ".txt"), discordMessage(new Random(seed), size, 0.5));
+        }
+    }
+    
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
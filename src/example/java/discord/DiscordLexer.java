@@ -1,19 +1,47 @@
 package discord;
 
+import com.github.natanbc.pratt.CharClass;
+import com.github.natanbc.pratt.CharacterStream;
+import com.github.natanbc.pratt.KeywordTable;
 import com.github.natanbc.pratt.Lexer;
 import com.github.natanbc.pratt.Position;
+import com.github.natanbc.pratt.SymbolTable;
 import com.github.natanbc.pratt.Token;
 import com.github.natanbc.pratt.TokenKind;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.Reader;
+import java.util.Collections;
 
 public class DiscordLexer extends Lexer {
+    private static final CharClass NAME_CHAR = CharClass.LETTER_OR_DIGIT;
+    private static final CharClass ID_CHAR = CharClass.LETTER_OR_DIGIT.or(CharClass.anyOf("_"));
+    private static final KeywordTable KEYWORDS = new KeywordTable(
+            Collections.singletonMap("a", DiscordTokenKind.A), NAME_CHAR
+    );
+    
+    private SymbolTable symbols;
+    
     public DiscordLexer(@Nonnull Reader reader) {
         super(reader);
     }
     
+    public DiscordLexer(@Nonnull CharacterStream stream) {
+        super(stream);
+    }
+    
+    /**
+     * Sets the table used to intern names and ids, so repeated values share a single
+     * string. Tables can be shared between lexers.
+     *
+     * @param symbols Table to use, or null to not intern values.
+     */
+    public void symbols(@Nullable SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+    
     @CheckReturnValue
     @Nonnull
     @Override
@@ -29,10 +57,13 @@ public class DiscordLexer extends Lexer {
             case '#': return new Token(DiscordTokenKind.HASH, pos(), "#");
             case ':': return new Token(DiscordTokenKind.COLON, pos(), ":");
             default: {
-                if(Character.isDigit(ch)) {
-                    return readPossibleId(pos(), (char)ch);
-                } else if(Character.isLetter(ch)) {
-                    return new Token(DiscordTokenKind.TEXT, pos(), readName((char)ch));
+                if(CharClass.DIGIT.matches(ch)) {
+                    Position pos = pos();
+                    //scanned again with the rest of the id, so the run includes it
+                    back();
+                    return readPossibleId(pos);
+                } else if(CharClass.LETTER.matches(ch)) {
+                    return KEYWORDS.read(this, ch, pos(), DiscordTokenKind.TEXT, symbols);
                 } else {
                     Position pos = pos();
                     String s = prettyContext(pos, 1);
@@ -50,40 +81,24 @@ public class DiscordLexer extends Lexer {
         return DiscordTokenKind.EOF;
     }
     
-    private String readName(char start) {
-        StringBuilder sb = new StringBuilder().append(start);
-        int ch = read(false);
-        while(ch != -1 && Character.isLetterOrDigit(ch)) {
-            sb.append((char)ch);
-            ch = read(false);
-        }
-        if(ch != -1) {
-            back();
-        }
-        return sb.toString();
-    }
-    
-    private Token readPossibleId(Position pos, char start) {
+    private Token readPossibleId(Position pos) {
+        CharSequence run = readRun(ID_CHAR);
         DiscordTokenKind kind = DiscordTokenKind.ID;
-        StringBuilder sb = new StringBuilder().append(start);
-        int ch = read(false);
-        while(ch != -1 && (Character.isLetterOrDigit(ch) || ch == '_')) {
-            if(!Character.isDigit(ch)) {
+        for(int i = 0; i < run.length(); i++) {
+            if(!CharClass.DIGIT.matches(run.charAt(i))) {
                 kind = DiscordTokenKind.TEXT;
+                break;
             }
-            sb.append((char)ch);
-            ch = read(false);
-        }
-        if(ch != -1) {
-            back();
         }
-        String text = sb.toString();
-        try {
-            //noinspection ResultOfMethodCallIgnored
-            Long.parseUnsignedLong(text);
-        } catch(NumberFormatException e) {
-            kind = DiscordTokenKind.TEXT;
+        String text = symbols == null ? run.toString() : symbols.intern(run, 0, run.length());
+        if(kind == DiscordTokenKind.ID) {
+            try {
+                //noinspection ResultOfMethodCallIgnored
+                Long.parseUnsignedLong(text);
+            } catch(NumberFormatException e) {
+                kind = DiscordTokenKind.TEXT;
+            }
         }
-        return new Token(kind, pos, sb.toString());
+        return new Token(kind, pos, text);
     }
 }
@@ -31,26 +31,27 @@ public class DiscordParselets {
     // <a:name:id>
     // <:name:id>
     public static final PrefixParselet<Void, Entity> COLON = (__1, parser, __2) -> {
-        Token nameToken = parser.peek().kind() == DiscordTokenKind.ID ?
-                parser.consume(DiscordTokenKind.ID) : parser.consume(DiscordTokenKind.TEXT);
+        DiscordTokenKind kind = (DiscordTokenKind)parser.peek().kind();
+        //names can be digits only, or the 'a' keyword
+        Token nameToken = parser.consume(kind == DiscordTokenKind.ID || kind == DiscordTokenKind.A ?
+                kind : DiscordTokenKind.TEXT);
         parser.expect(DiscordTokenKind.COLON);
         String id = parser.consume(DiscordTokenKind.ID).value();
         return new Emote(nameToken.value(), Long.parseUnsignedLong(id));
     };
     
+    public static final PrefixParselet<Void, Entity> A = (ctx, parser, __) ->
+            COLON.parse(ctx, parser, parser.consume(DiscordTokenKind.COLON));
+    
     public static final PrefixParselet<Void, Entity> TEXT = (ctx, parser, token) -> {
-        if(!token.value().equals("a")) {
-            if(parser.peek().kind() == DiscordTokenKind.COLON) {
-                Position pos = token.position();
-                throw new IllegalArgumentException("Expected ':' or 'a', got " +
-                        token.kind() + " (" + token.value() +
-                        ") at line " + pos.line() + ", column " + pos.column() +
-                        "\n" + parser.lexer().prettyContextFor(token));
-            } else {
-                return DEFAULT.parse(ctx, parser, token);
-            }
+        if(parser.peek().kind() == DiscordTokenKind.COLON) {
+            Position pos = token.position();
+            throw new IllegalArgumentException("Expected ':' or 'a', got " +
+                    token.kind() + " (" + token.value() +
+                    ") at line " + pos.line() + ", column " + pos.column() +
+                    "\n" + parser.lexer().prettyContextFor(token));
         }
-        return COLON.parse(ctx, parser, parser.consume(DiscordTokenKind.COLON));
+        return DEFAULT.parse(ctx, parser, token);
     };
     
     // <@&id>
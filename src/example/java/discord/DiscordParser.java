@@ -1,14 +1,28 @@
 package discord;
 
 import com.github.natanbc.pratt.Parser;
+import com.github.natanbc.pratt.SymbolTable;
+import com.github.natanbc.pratt.Utf8CharacterStream;
+import discord.entity.Emote;
 import discord.entity.Entity;
+import discord.entity.User;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 
 public class DiscordParser extends Parser<Void, Entity> {
     public DiscordParser(@Nonnull String expression) {
-        super(new DiscordLexer(new StringReader(expression)));
+        this(new DiscordLexer(new StringReader(expression)));
+    }
+    
+    public DiscordParser(@Nonnull byte[] utf8) {
+        this(new DiscordLexer(new Utf8CharacterStream(utf8)));
+    }
+    
+    private DiscordParser(@Nonnull DiscordLexer lexer) {
+        super(lexer);
         for(DiscordTokenKind kind : DiscordTokenKind.values()) {
             register(kind, DiscordParselets.DEFAULT);
         }
@@ -16,13 +30,57 @@ public class DiscordParser extends Parser<Void, Entity> {
         register(DiscordTokenKind.ID, DiscordParselets.ID);
         register(DiscordTokenKind.COLON, DiscordParselets.COLON);
         register(DiscordTokenKind.TEXT, DiscordParselets.TEXT);
+        register(DiscordTokenKind.A, DiscordParselets.A);
         register(DiscordTokenKind.AT, DiscordParselets.AT);
         register(DiscordTokenKind.HASH, DiscordParselets.HASH);
         register(DiscordTokenKind.EXCLAMATION, DiscordParselets.EXCLAMATION_OR_AMPERSAND);
         register(DiscordTokenKind.AMPERSAND, DiscordParselets.EXCLAMATION_OR_AMPERSAND);
     }
     
+    /**
+     * Rebinds this parser to a new expression, reusing its buffers.
+     *
+     * @param expression Expression to parse.
+     */
+    public void reset(@Nonnull String expression) {
+        reset(new StringReader(expression));
+    }
+    
+    /**
+     * Sets the table used to intern names and ids.
+     *
+     * @param symbols Table to use, or null to not intern values.
+     *
+     * @see DiscordLexer#symbols(SymbolTable)
+     */
+    public void symbols(@Nullable SymbolTable symbols) {
+        ((DiscordLexer)lexer()).symbols(symbols);
+    }
+    
     public static void main(String[] args) {
         System.out.println(new DiscordParser("<@!1234>").parseExpression(null));
+        System.out.println(new DiscordParser("<@!1234>".getBytes(StandardCharsets.UTF_8)).parseExpression(null));
+    
+        SymbolTable symbols = new SymbolTable(1024);
+        DiscordParser parser = new DiscordParser("<:pog:5678>");
+        parser.symbols(symbols);
+        Emote first = (Emote)parser.parseExpression(null);
+        parser.reset("<:pog:5678>");
+        Emote second = (Emote)parser.parseExpression(null);
+        System.out.println(first + " shares name with " + second + ": " + (first.name() == second.name()));
+    
+        //ids are checked and counted as primitives, without boxing them into a Set<Long> or Map<Long, Long>
+        LongHashSet blocked = new LongHashSet(1024);
+        blocked.add(1234);
+        MentionFilter filter = new MentionFilter(blocked, null, null);
+        LongLongHashMap counts = new LongLongHashMap(1024);
+        for(String mention : new String[] { "<@1234>", "<@!5678>", "<@5678>", "<@&42>" }) {
+            parser.reset(mention);
+            Entity entity = parser.parseExpression(null);
+            if(filter.test(entity) && entity instanceof User) {
+                counts.addTo(entity.id(), 1);
+            }
+        }
+        System.out.println("5678 mentioned " + counts.get(5678, 0) + " times, 1234 " + counts.get(1234, 0) + " times");
     }
 }
@@ -0,0 +1,198 @@
+package discord;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Set of {@code long} values, such as snowflake ids, stored without boxing. Values are
+ * kept in a single open addressing table with linear probing, either in a {@code long[]}
+ * or, for large sets, in a direct buffer outside the heap.
+ *
+ * <br>Sets are not thread safe, but can be read concurrently if not modified.
+ */
+public class LongHashSet {
+    //marks empty slots, the value itself is tracked separately
+    private static final long EMPTY = 0;
+    //direct buffers are limited to 2^31 - 1 bytes
+    static final int MAX_TABLE = 1 << 27;
+    
+    private final boolean direct;
+    private LongBuffer table;
+    private int mask;
+    private int size;
+    private boolean hasEmpty;
+    
+    /**
+     * Creates a set stored in the heap.
+     *
+     * @param expected Number of values expected, used to size the table.
+     */
+    public LongHashSet(@Nonnegative int expected) {
+        this(expected, false);
+    }
+    
+    /**
+     * Creates a set.
+     *
+     * @param expected Number of values expected, used to size the table.
+     * @param direct Whether or not the table should be stored in a direct buffer, outside the heap.
+     */
+    public LongHashSet(@Nonnegative int expected, boolean direct) {
+        this.direct = direct;
+        this.table = allocate(tableSize(expected), direct);
+        this.mask = table.capacity() - 1;
+    }
+    
+    /**
+     * @return Number of values in this set.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @param value Value to look up.
+     *
+     * @return Whether or not this set contains the value.
+     */
+    @CheckReturnValue
+    public boolean contains(long value) {
+        if(value == EMPTY) {
+            return hasEmpty;
+        }
+        return table.get(slot(value)) == value;
+    }
+    
+    /**
+     * @param value Value to add.
+     *
+     * @return True if the value was not already in this set.
+     */
+    public boolean add(long value) {
+        if(value == EMPTY) {
+            boolean added = !hasEmpty;
+            hasEmpty = true;
+            if(added) {
+                size++;
+            }
+            return added;
+        }
+        int i = slot(value);
+        if(table.get(i) == value) {
+            return false;
+        }
+        //the table is kept at most half full, so probe sequences stay short
+        if((size + 1) * 2 > table.capacity()) {
+            rehash(grow(table.capacity()));
+            i = slot(value);
+        }
+        table.put(i, value);
+        size++;
+        return true;
+    }
+    
+    /**
+     * @param value Value to remove.
+     *
+     * @return True if the value was in this set.
+     */
+    public boolean remove(long value) {
+        if(value == EMPTY) {
+            boolean removed = hasEmpty;
+            hasEmpty = false;
+            if(removed) {
+                size--;
+            }
+            return removed;
+        }
+        LongBuffer t = table;
+        int i = slot(value);
+        if(t.get(i) == EMPTY) {
+            return false;
+        }
+        //move later values of the probe sequence back, instead of leaving a tombstone
+        int gap = i;
+        for(int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            long v = t.get(j);
+            if(v == EMPTY) {
+                break;
+            }
+            int home = hash(v) & mask;
+            if(((j - home) & mask) >= ((j - gap) & mask)) {
+                t.put(gap, v);
+                gap = j;
+            }
+        }
+        t.put(gap, EMPTY);
+        size--;
+        return true;
+    }
+    
+    /**
+     * Removes every value from this set, keeping its table.
+     */
+    public void clear() {
+        LongBuffer t = table;
+        for(int i = 0; i < t.capacity(); i++) {
+            t.put(i, EMPTY);
+        }
+        size = 0;
+        hasEmpty = false;
+    }
+    
+    //index of the value in the table, or of the empty slot where it would be added
+    private int slot(long value) {
+        LongBuffer t = table;
+        int i = hash(value) & mask;
+        long v;
+        while((v = t.get(i)) != EMPTY && v != value) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+    
+    private void rehash(int capacity) {
+        LongBuffer old = table;
+        table = allocate(capacity, direct);
+        mask = capacity - 1;
+        for(int i = 0; i < old.capacity(); i++) {
+            long v = old.get(i);
+            if(v == EMPTY) {
+                continue;
+            }
+            table.put(slot(v), v);
+        }
+    }
+    
+    static int tableSize(int expected) {
+        if(expected < 0 || expected > MAX_TABLE / 4) {
+            throw new IllegalArgumentException("Expected size must be between 0 and 2^25");
+        }
+        return Math.max(16, Integer.highestOneBit(Math.max(1, expected) * 2 - 1) << 1);
+    }
+    
+    static int grow(int capacity) {
+        if(capacity == MAX_TABLE) {
+            throw new IllegalStateException("Table is full");
+        }
+        return capacity * 2;
+    }
+    
+    static LongBuffer allocate(int capacity, boolean direct) {
+        if(direct) {
+            return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        return LongBuffer.wrap(new long[capacity]);
+    }
+    
+    static int hash(long value) {
+        //snowflakes share their high bits within short time spans, so every bit is mixed into the low ones
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,224 @@
+package discord;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import java.nio.LongBuffer;
+
+/**
+ * Map from {@code long} keys to {@code long} values, such as snowflake ids to counters,
+ * stored without boxing. Entries are kept in a single open addressing table with linear
+ * probing, each key next to its value, either in a {@code long[]} or, for large maps, in
+ * a direct buffer outside the heap.
+ *
+ * <br>Maps are not thread safe, but can be read concurrently if not modified.
+ *
+ * @see LongHashSet
+ */
+public class LongLongHashMap {
+    //marks empty slots, the key itself is tracked separately
+    private static final long EMPTY = 0;
+    
+    private final boolean direct;
+    //keys at even indices, values right after them
+    private LongBuffer table;
+    private int mask;
+    private int size;
+    private boolean hasEmpty;
+    private long emptyValue;
+    
+    /**
+     * Creates a map stored in the heap.
+     *
+     * @param expected Number of entries expected, used to size the table.
+     */
+    public LongLongHashMap(@Nonnegative int expected) {
+        this(expected, false);
+    }
+    
+    /**
+     * Creates a map.
+     *
+     * @param expected Number of entries expected, used to size the table.
+     * @param direct Whether or not the table should be stored in a direct buffer, outside the heap.
+     */
+    public LongLongHashMap(@Nonnegative int expected, boolean direct) {
+        int capacity = LongHashSet.tableSize(expected);
+        this.direct = direct;
+        this.table = LongHashSet.allocate(capacity * 2, direct);
+        this.mask = capacity - 1;
+    }
+    
+    /**
+     * @return Number of entries in this map.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @param key Key to look up.
+     *
+     * @return Whether or not this map has an entry for the key.
+     */
+    @CheckReturnValue
+    public boolean containsKey(long key) {
+        if(key == EMPTY) {
+            return hasEmpty;
+        }
+        return table.get(slot(key) * 2) == key;
+    }
+    
+    /**
+     * @param key Key to look up.
+     * @param missing Value returned if there's no entry for the key.
+     *
+     * @return The value of the key, or {@code missing} if there's no entry for it.
+     */
+    @CheckReturnValue
+    public long get(long key, long missing) {
+        if(key == EMPTY) {
+            return hasEmpty ? emptyValue : missing;
+        }
+        int i = slot(key) * 2;
+        return table.get(i) == key ? table.get(i + 1) : missing;
+    }
+    
+    /**
+     * @param key Key of the entry.
+     * @param value New value of the key.
+     *
+     * @return True if there was no entry for the key.
+     */
+    public boolean put(long key, long value) {
+        if(key == EMPTY) {
+            boolean added = !hasEmpty;
+            hasEmpty = true;
+            emptyValue = value;
+            if(added) {
+                size++;
+            }
+            return added;
+        }
+        int i = insert(key);
+        boolean added = table.get(i) == EMPTY;
+        table.put(i, key);
+        table.put(i + 1, value);
+        return added;
+    }
+    
+    /**
+     * Adds to the value of a key, starting from zero if there's no entry for it.
+     *
+     * @param key Key of the entry.
+     * @param delta Amount to add.
+     *
+     * @return The new value of the key.
+     */
+    public long addTo(long key, long delta) {
+        if(key == EMPTY) {
+            long value = (hasEmpty ? emptyValue : 0) + delta;
+            put(key, value);
+            return value;
+        }
+        int i = insert(key);
+        long value = table.get(i + 1) + delta;
+        table.put(i, key);
+        table.put(i + 1, value);
+        return value;
+    }
+    
+    /**
+     * @param key Key of the entry to remove.
+     *
+     * @return True if there was an entry for the key.
+     */
+    public boolean remove(long key) {
+        if(key == EMPTY) {
+            boolean removed = hasEmpty;
+            hasEmpty = false;
+            emptyValue = 0;
+            if(removed) {
+                size--;
+            }
+            return removed;
+        }
+        LongBuffer t = table;
+        int i = slot(key);
+        if(t.get(i * 2) == EMPTY) {
+            return false;
+        }
+        //move later entries of the probe sequence back, instead of leaving a tombstone
+        int gap = i;
+        for(int j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            long k = t.get(j * 2);
+            if(k == EMPTY) {
+                break;
+            }
+            int home = LongHashSet.hash(k) & mask;
+            if(((j - home) & mask) >= ((j - gap) & mask)) {
+                t.put(gap * 2, k);
+                t.put(gap * 2 + 1, t.get(j * 2 + 1));
+                gap = j;
+            }
+        }
+        t.put(gap * 2, EMPTY);
+        t.put(gap * 2 + 1, 0);
+        size--;
+        return true;
+    }
+    
+    /**
+     * Removes every entry from this map, keeping its table.
+     */
+    public void clear() {
+        LongBuffer t = table;
+        for(int i = 0; i < t.capacity(); i++) {
+            t.put(i, EMPTY);
+        }
+        size = 0;
+        hasEmpty = false;
+        emptyValue = 0;
+    }
+    
+    //table index of the key's entry, growing the table first if a new entry doesn't fit
+    private int insert(long key) {
+        int i = slot(key);
+        if(table.get(i * 2) != key) {
+            //the table is kept at most half full, so probe sequences stay short
+            if((size + 1) * 2 > mask + 1) {
+                rehash(LongHashSet.grow((mask + 1) * 2) / 2);
+                i = slot(key);
+            }
+            size++;
+        }
+        return i * 2;
+    }
+    
+    //slot of the key, or of the empty slot where it would be added
+    private int slot(long key) {
+        LongBuffer t = table;
+        int i = LongHashSet.hash(key) & mask;
+        long k;
+        while((k = t.get(i * 2)) != EMPTY && k != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+    
+    private void rehash(int capacity) {
+        LongBuffer old = table;
+        table = LongHashSet.allocate(capacity * 2, direct);
+        mask = capacity - 1;
+        for(int i = 0; i < old.capacity(); i += 2) {
+            long k = old.get(i);
+            if(k == EMPTY) {
+                continue;
+            }
+            int j = slot(k) * 2;
+            table.put(j, k);
+            table.put(j + 1, old.get(i + 1));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package discord;
+
+import discord.entity.Channel;
+import discord.entity.Entity;
+import discord.entity.Role;
+import discord.entity.User;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.Predicate;
+
+/**
+ * Filters parsed mentions by id: mentions of blocked users are rejected, and role and
+ * channel mentions are only accepted if allowed. Ids are looked up as primitive values,
+ * so filtering doesn't box them.
+ */
+public class MentionFilter implements Predicate<Entity> {
+    private final LongHashSet blockedUsers;
+    private final LongHashSet allowedRoles;
+    private final LongHashSet allowedChannels;
+    
+    /**
+     * @param blockedUsers Users whose mentions are rejected.
+     * @param allowedRoles Roles that can be mentioned, or null to allow every role.
+     * @param allowedChannels Channels that can be mentioned, or null to allow every channel.
+     */
+    public MentionFilter(@Nonnull LongHashSet blockedUsers, @Nullable LongHashSet allowedRoles,
+                         @Nullable LongHashSet allowedChannels) {
+        this.blockedUsers = blockedUsers;
+        this.allowedRoles = allowedRoles;
+        this.allowedChannels = allowedChannels;
+    }
+    
+    @CheckReturnValue
+    @Override
+    public boolean test(@Nonnull Entity entity) {
+        if(entity instanceof User) {
+            return !blockedUsers.contains(entity.id());
+        }
+        if(entity instanceof Role) {
+            return allowedRoles == null || allowedRoles.contains(entity.id());
+        }
+        if(entity instanceof Channel) {
+            return allowedChannels == null || allowedChannels.contains(entity.id());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package math;
+
+import com.github.natanbc.pratt.ParallelTokenizer;
+import com.github.natanbc.pratt.ParseCache;
+import com.github.natanbc.pratt.Parser;
+import com.github.natanbc.pratt.TokenBuffer;
+import math.ast.NodeArena;
+import math.ast.NodeArenaCodec;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class ArenaMathParser extends Parser<NodeArena, NodeArena> {
+    public ArenaMathParser(@Nonnull String expression) {
+        this(new MathLexer(new StringReader(expression)));
+    }
+    
+    public ArenaMathParser(@Nonnull MathLexer lexer) {
+        super(lexer);
+        registerParselets();
+    }
+    
+    public ArenaMathParser(@Nonnull TokenBuffer tokens) {
+        super(tokens);
+        registerParselets();
+    }
+    
+    private void registerParselets() {
+        register(MathTokenKind.NUMBER, ArenaParselets.NUMBER);
+        register(MathTokenKind.MINUS, ArenaParselets.NEG);
+        register(MathTokenKind.LEFT_PAREN, ArenaParselets.PAREN);
+        register(MathTokenKind.PLUS, ArenaParselets.SUM);
+        register(MathTokenKind.MINUS, ArenaParselets.SUB);
+        register(MathTokenKind.ASTERISK, ArenaParselets.MUL);
+        register(MathTokenKind.SLASH, ArenaParselets.DIV);
+    }
+    
+    /**
+     * Rebinds this parser to a new expression, reusing its buffers.
+     *
+     * @param expression Expression to parse.
+     */
+    public void reset(@Nonnull String expression) {
+        reset(new StringReader(expression));
+    }
+    
+    public static void main(String[] args) throws IOException {
+        System.out.println(new ArenaMathParser("1 + 2.5 * (0.1 + 0.2) + .5").parseExpression(new NodeArena()).eval());
+    
+        StringBuilder sb = new StringBuilder("1");
+        for(int i = 0; i < 500_000; i++) {
+            sb.append(i % 2 == 0 ? " + " : " * ").append(i % 7).append(".5");
+        }
+        NodeArena arena = new NodeArena(1 << 20);
+        new ArenaMathParser(sb.toString()).parseExpression(arena);
+        System.out.println(arena.size() + " nodes = " + arena.eval());
+    
+        //every line can be lexed on its own, so large multi-line expressions can be lexed in parallel
+        String lines = sb.toString().replace(" + ", " +\n");
+        TokenBuffer tokens = new ParallelTokenizer(MathLexer::new, MathTokenKind.values()).tokenize(lines);
+        NodeArena parallel = new ArenaMathParser(tokens).parseExpression(new NodeArena(1 << 20));
+        System.out.println(tokens.size() + " tokens, " + tokens.line(tokens.size() - 1) + " lines = " + parallel.eval());
+    
+        //results are kept across runs, so the second run loads the expression instead of parsing it
+        Files.createDirectories(Paths.get("build"));
+        try(ParseCache<NodeArena> cache = new ParseCache<>(Paths.get("build", "math-cache.bin"), 1, new NodeArenaCodec())) {
+            String expression = sb.toString();
+            long start = System.nanoTime();
+            NodeArena cached = cache.parse(expression, e -> new ArenaMathParser(e).parseExpression(new NodeArena()));
+            System.out.printf("%d nodes = %s in %.1f ms, %d cached expressions%n", cached.size(), cached.eval(),
+                    (System.nanoTime() - start) / 1e6, cache.size());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package math;
+
+import com.github.natanbc.pratt.InfixParselet;
+import com.github.natanbc.pratt.Parser;
+import com.github.natanbc.pratt.PrefixParselet;
+import com.github.natanbc.pratt.Token;
+import math.ast.NodeArena;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Same grammar as {@link MathParselets}, but appending nodes to the {@link NodeArena}
+ * passed as context instead of allocating a node object each. Every parselet returns
+ * the arena itself.
+ */
+public class ArenaParselets {
+    public static final PrefixParselet<NodeArena, NodeArena> NUMBER = (arena, __, token) ->
+            arena.number(Double.parseDouble(token.value()));
+    
+    public static final PrefixParselet<NodeArena, NodeArena> NEG = (arena, parser, __) -> {
+        parser.parseExpression(arena, Precedence.NEG);
+        return arena.negate();
+    };
+    
+    public static final PrefixParselet<NodeArena, NodeArena> PAREN = (arena, parser, __) -> {
+        parser.parseExpression(arena);
+        parser.expect(MathTokenKind.RIGHT_PAREN);
+        return arena;
+    };
+    
+    public static final InfixParselet<NodeArena, NodeArena> SUM = new BinaryOperator(Precedence.SUM, NodeArena.ADD);
+    public static final InfixParselet<NodeArena, NodeArena> SUB = new BinaryOperator(Precedence.SUM, NodeArena.SUB);
+    public static final InfixParselet<NodeArena, NodeArena> MUL = new BinaryOperator(Precedence.MUL, NodeArena.MUL);
+    public static final InfixParselet<NodeArena, NodeArena> DIV = new BinaryOperator(Precedence.MUL, NodeArena.DIV);
+    
+    private static class BinaryOperator implements InfixParselet<NodeArena, NodeArena> {
+        private final int precedence;
+        private final byte kind;
+    
+        private BinaryOperator(int precedence, byte kind) {
+            this.precedence = precedence;
+            this.kind = kind;
+        }
+    
+        @Nonnegative
+        @CheckReturnValue
+        @Override
+        public int precedence() {
+            return precedence;
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public NodeArena parse(NodeArena arena, @Nonnull Parser<NodeArena, NodeArena> parser, @Nonnull NodeArena left, @Nonnull Token token) {
+            int leftOperand = arena.root();
+            parser.parseExpression(arena, precedence);
+            return arena.binary(kind, leftOperand);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package math;
+
+import com.github.natanbc.pratt.EventParselets;
+import com.github.natanbc.pratt.EventSink;
+import com.github.natanbc.pratt.Parser;
+import com.github.natanbc.pratt.Token;
+
+import javax.annotation.Nonnull;
+import java.io.StringReader;
+
+/**
+ * Parses math expressions into {@link EventSink events}, without building a tree.
+ */
+public class MathEventParser extends Parser<EventSink, EventSink> {
+    public MathEventParser(@Nonnull String expression) {
+        this(new MathLexer(new StringReader(expression)));
+    }
+    
+    public MathEventParser(@Nonnull MathLexer lexer) {
+        super(lexer);
+        register(MathTokenKind.NUMBER, EventParselets.leaf());
+        register(MathTokenKind.MINUS, EventParselets.prefix(Precedence.NEG));
+        register(MathTokenKind.LEFT_PAREN, EventParselets.group(MathTokenKind.RIGHT_PAREN));
+        register(MathTokenKind.PLUS, EventParselets.infix(Precedence.SUM));
+        register(MathTokenKind.MINUS, EventParselets.infix(Precedence.SUM));
+        register(MathTokenKind.ASTERISK, EventParselets.infix(Precedence.MUL));
+        register(MathTokenKind.SLASH, EventParselets.infix(Precedence.MUL));
+    }
+    
+    public static void main(String[] args) {
+        //converts to reverse polish notation, reusing the same sink for every expression
+        StringBuilder sb = new StringBuilder();
+        EventSink rpn = new EventSink() {
+            @Override
+            public void exitPrefix(@Nonnull Token token) {
+                if(token.kind() == MathTokenKind.MINUS) {
+                    sb.append("neg ");
+                }
+            }
+    
+            @Override
+            public void exitInfix(@Nonnull Token token) {
+                sb.append(token.value()).append(' ');
+            }
+    
+            @Override
+            public void leaf(@Nonnull Token token) {
+                sb.append(token.value()).append(' ');
+            }
+        };
+        for(String expression : new String[] { "1 + 2.5 * (0.1 + 0.2) + .5", "-(1 - 2) * 3" }) {
+            sb.setLength(0);
+            new MathEventParser(expression).parseExpression(rpn);
+            System.out.println(sb.toString().trim());
+        }
+    }
+}
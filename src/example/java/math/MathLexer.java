@@ -1,5 +1,7 @@
 package math;
 
+import com.github.natanbc.pratt.CharClass;
+import com.github.natanbc.pratt.CharacterStream;
 import com.github.natanbc.pratt.Lexer;
 import com.github.natanbc.pratt.Position;
 import com.github.natanbc.pratt.Token;
@@ -14,6 +16,10 @@ public class MathLexer extends Lexer {
         super(reader);
     }
     
+    public MathLexer(@Nonnull CharacterStream stream) {
+        super(stream);
+    }
+    
     @Nonnull
     @CheckReturnValue
     @Override
@@ -27,11 +33,12 @@ public class MathLexer extends Lexer {
             case '/': return new Token(MathTokenKind.SLASH, pos(), "/");
             case '(': return new Token(MathTokenKind.LEFT_PAREN, pos(), "(");
             case ')': return new Token(MathTokenKind.RIGHT_PAREN, pos(), ")");
+            case ';': return new Token(MathTokenKind.SEMICOLON, pos(), ";");
             default: {
-                if(Character.isDigit(ch)) {
+                if(CharClass.DIGIT.matches(ch)) {
                     return new Token(MathTokenKind.NUMBER, pos(), readNumber((char)ch));
                 } else if(ch == '.') {
-                    if(Character.isDigit(peek(false))) {
+                    if(CharClass.DIGIT.matches(peek(false))) {
                         return new Token(MathTokenKind.NUMBER, pos(), readNumber((char)ch));
                     }
                 }
@@ -53,28 +60,15 @@ public class MathLexer extends Lexer {
     @Nonnull
     @CheckReturnValue
     private String readNumber(char start) {
-        StringBuilder sb = new StringBuilder().append(start);
-        boolean point = start == '.';
-        while(true) {
-            int ch = read(false);
-            if(Character.isDigit(ch)) {
-                sb.append((char)ch);
-            } else if(ch == '.') {
-                if(point) {
-                    return sb.toString();
-                }
-                ch = peek(false);
-                if(!Character.isDigit(ch)) {
-                    return sb.toString();
-                }
-                sb.append('.');
-                point = true;
-            } else {
-                if(ch != -1) {
-                    back();
-                }
+        StringBuilder sb = new StringBuilder(16).append(start);
+        if(start != '.') {
+            sb.append(readRun(CharClass.DIGIT));
+            if(!match('.')) {
                 return sb.toString();
             }
+            //a trailing point is part of the number, as in '2.'
+            sb.append((char)read(false));
         }
+        return sb.append(readRun(CharClass.DIGIT)).toString();
     }
 }
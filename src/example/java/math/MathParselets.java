@@ -4,6 +4,9 @@ import com.github.natanbc.pratt.InfixParselet;
 import com.github.natanbc.pratt.Parser;
 import com.github.natanbc.pratt.PrefixParselet;
 import com.github.natanbc.pratt.Token;
+import com.github.natanbc.pratt.annotation.Grammar;
+import com.github.natanbc.pratt.annotation.Infix;
+import com.github.natanbc.pratt.annotation.Prefix;
 import math.ast.BinaryOperationNode;
 import math.ast.Node;
 import math.ast.NumberNode;
@@ -14,22 +17,30 @@ import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import java.util.function.BiFunction;
 
+@Grammar(kinds = MathTokenKind.class, name = "CompiledMathParser")
 public class MathParselets {
+    @Prefix("NUMBER")
     public static final PrefixParselet<Void, Node> NUMBER = (__1, __2, token) ->
             new NumberNode(Double.parseDouble(token.value()));
     
+    @Prefix("MINUS")
     public static final PrefixParselet<Void, Node> NEG = (ctx, parser, __) ->
             new UnaryOperationNode(parser.parseExpression(ctx, Precedence.NEG), i -> -i);
     
+    @Prefix("LEFT_PAREN")
     public static final PrefixParselet<Void, Node> PAREN = (ctx, parser, __) -> {
         Node expr = parser.parseExpression(ctx);
         parser.expect(MathTokenKind.RIGHT_PAREN);
         return expr;
     };
     
+    @Infix(value = "PLUS", precedence = Precedence.SUM)
     public static final InfixParselet<Void, Node> SUM = new BinaryOperator(Precedence.SUM, (a, b) -> a + b);
+    @Infix(value = "MINUS", precedence = Precedence.SUM)
     public static final InfixParselet<Void, Node> SUB = new BinaryOperator(Precedence.SUM, (a, b) -> a - b);
+    @Infix(value = "ASTERISK", precedence = Precedence.MUL)
     public static final InfixParselet<Void, Node> MUL = new BinaryOperator(Precedence.MUL, (a, b) -> a * b);
+    @Infix(value = "SLASH", precedence = Precedence.MUL)
     public static final InfixParselet<Void, Node> DIV = new BinaryOperator(Precedence.MUL, (a, b) -> a / b);
     
     
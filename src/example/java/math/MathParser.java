@@ -1,14 +1,22 @@
 package math;
 
+import com.github.natanbc.pratt.OffsetCharacterStream;
 import com.github.natanbc.pratt.Parser;
+import com.github.natanbc.pratt.ParserPool;
+import com.github.natanbc.pratt.TriviaPolicy;
 import math.ast.Node;
 
 import javax.annotation.Nonnull;
 import java.io.StringReader;
+import java.util.stream.Collectors;
 
 public class MathParser extends Parser<Void, Node> {
     public MathParser(@Nonnull String expression) {
-        super(new MathLexer(new StringReader(expression)));
+        this(new MathLexer(new StringReader(expression)));
+    }
+    
+    public MathParser(@Nonnull MathLexer lexer) {
+        super(lexer);
         register(MathTokenKind.NUMBER, MathParselets.NUMBER);
         register(MathTokenKind.MINUS, MathParselets.NEG);
         register(MathTokenKind.LEFT_PAREN, MathParselets.PAREN);
@@ -18,7 +26,55 @@ public class MathParser extends Parser<Void, Node> {
         register(MathTokenKind.SLASH, MathParselets.DIV);
     }
     
+    /**
+     * Checks whether or not an expression is valid, without tracking lines and columns.
+     *
+     * @param expression Expression to check.
+     *
+     * @return Whether or not the expression can be parsed.
+     */
+    public static boolean isValid(@Nonnull String expression) {
+        MathParser parser = new MathParser(new MathLexer(new OffsetCharacterStream(expression)));
+        try {
+            parser.parseExpression(null);
+            return parser.lexer().peekKind() == MathTokenKind.EOF;
+        } catch(IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Rebinds this parser to a new expression, reusing its buffers.
+     *
+     * @param expression Expression to parse.
+     */
+    public void reset(@Nonnull String expression) {
+        reset(new StringReader(expression));
+    }
+    
     public static void main(String[] args) {
         System.out.println(new MathParser("1 + 2.5 * (0.1 + 0.2) + .5").parseExpression(null).eval());
+        //same grammar, using the parser generated from the annotations on MathParselets
+        System.out.println(new CompiledMathParser(new MathLexer(new StringReader("1 + 2.5 * (0.1 + 0.2) + .5")))
+                .parseExpression(null).eval());
+        System.out.println(isValid("1 + 2.5 * (0.1 + 0.2) + .5") + " " + isValid("1 + * 2"));
+        //parsers taken from a pool are rebound to new input instead of being created for every expression
+        ParserPool<MathParser> pool = new ParserPool<>(4, () -> new MathParser(""));
+        for(String expression : new String[] { "2 * 3", "(4 - 1) / 2" }) {
+            double value = pool.use(parser -> {
+                parser.reset(expression);
+                return parser.parseExpression(null).eval();
+            });
+            System.out.println(value);
+        }
+        //comments are skipped by the stream, so the lexer never sees them
+        MathParser commented = new MathParser("1 + (* one *) 1 # two");
+        commented.lexer().trivia(TriviaPolicy.WHITESPACE.lineComment("#").blockComment("(*", "*)"));
+        System.out.println(commented.parseExpression(null).eval());
+        //a script of several expressions is parsed lazily, one expression at a time
+        MathParser script = new MathParser("1 + 2;\n3 * 4;;\n(5 - 1) / 2;");
+        System.out.println(script.stream(null, MathTokenKind.SEMICOLON)
+                .map(e -> String.valueOf(e.eval()))
+                .collect(Collectors.joining(", ")));
     }
 }
@@ -3,5 +3,7 @@ package math;
 import com.github.natanbc.pratt.TokenKind;
 
 public enum MathTokenKind implements TokenKind {
-    NUMBER, PLUS, MINUS, ASTERISK, SLASH, LEFT_PAREN, RIGHT_PAREN, EOF
+    NUMBER, PLUS, MINUS, ASTERISK, SLASH, LEFT_PAREN, RIGHT_PAREN, EOF,
+    //appended after EOF, so ordinals recorded in existing token streams keep their meaning
+    SEMICOLON
 }
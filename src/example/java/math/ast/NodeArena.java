@@ -0,0 +1,150 @@
+package math.ast;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Stores a whole expression in parallel arrays instead of one object per node.
+ * Nodes are appended in postfix order, so the operands of a node always come before it:
+ * the right operand is the node immediately before, and the left operand of binary nodes
+ * is stored by index.
+ */
+public final class NodeArena implements Node {
+    public static final byte NUMBER = 0, NEG = 1, ADD = 2, SUB = 3, MUL = 4, DIV = 5;
+    
+    private byte[] kinds;
+    private int[] left;
+    private double[] values;
+    private double[] results;
+    private int size;
+    
+    public NodeArena() {
+        this(64);
+    }
+    
+    public NodeArena(@Nonnegative int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.kinds = new byte[capacity];
+        this.left = new int[capacity];
+        this.values = new double[capacity];
+    }
+    
+    /**
+     * @return Index of the last node added, which is the root of the last complete expression.
+     */
+    @CheckReturnValue
+    public int root() {
+        return size - 1;
+    }
+    
+    @Nonnegative
+    @CheckReturnValue
+    public int size() {
+        return size;
+    }
+    
+    @CheckReturnValue
+    public byte kind(@Nonnegative int node) {
+        return kinds[node];
+    }
+    
+    /**
+     * @param node Index of a {@link #NUMBER} node.
+     *
+     * @return The value of the node.
+     */
+    @CheckReturnValue
+    public double value(@Nonnegative int node) {
+        return values[node];
+    }
+    
+    /**
+     * @param node Index of a binary node.
+     *
+     * @return Index of the left operand of the node.
+     */
+    @CheckReturnValue
+    public int leftOperand(@Nonnegative int node) {
+        return left[node];
+    }
+    
+    /**
+     * Removes every node, keeping the arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+    
+    @Nonnull
+    public NodeArena number(double value) {
+        int i = add(NUMBER);
+        values[i] = value;
+        return this;
+    }
+    
+    @Nonnull
+    public NodeArena negate() {
+        add(NEG);
+        return this;
+    }
+    
+    /**
+     * Adds a binary node, with the last node added as the right operand.
+     *
+     * @param kind Kind of the operation.
+     * @param leftOperand Index of the left operand.
+     *
+     * @return This arena.
+     */
+    @Nonnull
+    public NodeArena binary(byte kind, int leftOperand) {
+        int i = add(kind);
+        left[i] = leftOperand;
+        return this;
+    }
+    
+    /**
+     * Evaluates every node in a single pass, in index order.
+     *
+     * @return The value of the {@link #root() root} node.
+     */
+    @CheckReturnValue
+    @Override
+    public double eval() {
+        if(size == 0) {
+            throw new IllegalStateException("Arena is empty");
+        }
+        double[] r = results;
+        if(r == null || r.length < size) {
+            r = results = new double[kinds.length];
+        }
+        byte[] kinds = this.kinds;
+        int[] left = this.left;
+        double[] values = this.values;
+        for(int i = 0; i < size; i++) {
+            switch(kinds[i]) {
+                case NUMBER: r[i] = values[i]; break;
+                case NEG: r[i] = -r[i - 1]; break;
+                case ADD: r[i] = r[left[i]] + r[i - 1]; break;
+                case SUB: r[i] = r[left[i]] - r[i - 1]; break;
+                case MUL: r[i] = r[left[i]] * r[i - 1]; break;
+                case DIV: r[i] = r[left[i]] / r[i - 1]; break;
+                default: throw new AssertionError();
+            }
+        }
+        return r[size - 1];
+    }
+    
+    private int add(byte kind) {
+        if(size == kinds.length) {
+            int n = size * 2;
+            kinds = Arrays.copyOf(kinds, n);
+            left = Arrays.copyOf(left, n);
+            values = Arrays.copyOf(values, n);
+        }
+        kinds[size] = kind;
+        return size++;
+    }
+}
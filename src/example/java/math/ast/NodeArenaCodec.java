@@ -0,0 +1,64 @@
+package math.ast;
+
+import com.github.natanbc.pratt.ResultCodec;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Stores an arena as its node count followed by each node, in index order: the kind,
+ * then the value for numbers or the left operand for binary nodes.
+ */
+public class NodeArenaCodec implements ResultCodec<NodeArena> {
+    @Override
+    public void write(@Nonnull NodeArena arena, @Nonnull DataOutput out) throws IOException {
+        out.writeInt(arena.size());
+        for(int i = 0; i < arena.size(); i++) {
+            byte kind = arena.kind(i);
+            out.writeByte(kind);
+            if(kind == NodeArena.NUMBER) {
+                out.writeDouble(arena.value(i));
+            } else if(kind != NodeArena.NEG) {
+                out.writeInt(arena.leftOperand(i));
+            }
+        }
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public NodeArena read(@Nonnull DataInput in) throws IOException {
+        int size = in.readInt();
+        if(size < 1) {
+            throw new IOException("Invalid node count " + size);
+        }
+        NodeArena arena = new NodeArena(size);
+        for(int i = 0; i < size; i++) {
+            byte kind = in.readByte();
+            switch(kind) {
+                case NodeArena.NUMBER: arena.number(in.readDouble()); break;
+                case NodeArena.NEG: {
+                    if(i == 0) {
+                        throw new IOException("Missing operand for node " + i);
+                    }
+                    arena.negate();
+                    break;
+                }
+                case NodeArena.ADD: case NodeArena.SUB: case NodeArena.MUL: case NodeArena.DIV: {
+                    int left = in.readInt();
+                    //operands always come before the node, with the right one immediately before
+                    if(left < 0 || left >= i - 1) {
+                        throw new IOException("Invalid left operand " + left + " for node " + i);
+                    }
+                    arena.binary(kind, left);
+                    break;
+                }
+                default: throw new IOException("Invalid node kind " + kind);
+            }
+        }
+        return arena;
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+
+/**
+ * Thrown when a parse exceeds one of the limits of its {@link ParseBudget}. Unlike parse
+ * errors, this isn't an {@link IllegalArgumentException}, so it isn't caught by
+ * {@link Parser#attempt(Object, PrefixParselet) speculative parsing}.
+ */
+public class BudgetExceededException extends RuntimeException {
+    private final ParseBudget.Limit limit;
+    
+    public BudgetExceededException(@Nonnull ParseBudget.Limit limit, @Nonnull String message) {
+        super(message);
+        this.limit = limit;
+    }
+    
+    /**
+     * @return The limit that was exceeded.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public ParseBudget.Limit limit() {
+        return limit;
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import java.util.function.IntPredicate;
+
+/**
+ * A set of characters, used by lexers to classify input. Membership for the
+ * Latin-1 range (0-255) is precomputed into a table, so the common case costs a
+ * single array load. Characters above that range are tested with a fallback predicate.
+ *
+ * <br>Lexers can create their own classes with {@link #of(IntPredicate)},
+ * {@link #anyOf(String)} and {@link #range(char, char)}, and combine them with
+ * {@link #or(CharClass)}, {@link #and(CharClass)} and {@link #negate()}.
+ */
+public final class CharClass {
+    /** Same as {@link Character#isWhitespace(int)}. */
+    public static final CharClass WHITESPACE = of(Character::isWhitespace);
+    /** Same as {@link Character#isDigit(int)}. */
+    public static final CharClass DIGIT = of(Character::isDigit);
+    /** Same as {@link Character#isLetter(int)}. */
+    public static final CharClass LETTER = of(Character::isLetter);
+    /** Same as {@link Character#isLetterOrDigit(int)}. */
+    public static final CharClass LETTER_OR_DIGIT = of(Character::isLetterOrDigit);
+    /** The ASCII digits, {@code 0} to {@code 9}. */
+    public static final CharClass ASCII_DIGIT = range('0', '9');
+    
+    private final boolean[] table;
+    private final IntPredicate fallback;
+    
+    private CharClass(boolean[] table, IntPredicate fallback) {
+        this.table = table;
+        this.fallback = fallback;
+    }
+    
+    /**
+     * Creates a class containing every character accepted by a predicate.
+     * The predicate is evaluated eagerly for the Latin-1 range, and lazily
+     * for every other character.
+     *
+     * @param predicate Predicate defining the class.
+     *
+     * @return A class with the accepted characters.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static CharClass of(@Nonnull IntPredicate predicate) {
+        boolean[] table = new boolean[256];
+        for(int i = 0; i < table.length; i++) {
+            table[i] = predicate.test(i);
+        }
+        return new CharClass(table, predicate);
+    }
+    
+    /**
+     * Creates a class containing the characters of a string.
+     *
+     * @param chars Characters in the class.
+     *
+     * @return A class with the provided characters.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static CharClass anyOf(@Nonnull String chars) {
+        return of(c -> chars.indexOf(c) != -1);
+    }
+    
+    /**
+     * Creates a class containing a range of characters.
+     *
+     * @param from First character in the range.
+     * @param to Last character in the range, inclusive.
+     *
+     * @return A class with the provided range.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static CharClass range(char from, char to) {
+        return of(c -> c >= from && c <= to);
+    }
+    
+    /**
+     * Returns whether or not a character belongs to this class. Negative
+     * values, such as the -1 returned at the end of a stream, never do.
+     *
+     * @param ch Character to test.
+     *
+     * @return Whether or not the character belongs to this class.
+     */
+    @CheckReturnValue
+    public boolean matches(int ch) {
+        if((ch & ~0xFF) == 0) {
+            return table[ch];
+        }
+        return ch > 0 && fallback.test(ch);
+    }
+    
+    /**
+     * @param other Class to combine.
+     *
+     * @return A class containing characters from either class.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public CharClass or(@Nonnull CharClass other) {
+        boolean[] t = new boolean[256];
+        for(int i = 0; i < t.length; i++) {
+            t[i] = table[i] || other.table[i];
+        }
+        return new CharClass(t, fallback.or(other.fallback));
+    }
+    
+    /**
+     * @param other Class to combine.
+     *
+     * @return A class containing characters present in both classes.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public CharClass and(@Nonnull CharClass other) {
+        boolean[] t = new boolean[256];
+        for(int i = 0; i < t.length; i++) {
+            t[i] = table[i] && other.table[i];
+        }
+        return new CharClass(t, fallback.and(other.fallback));
+    }
+    
+    /**
+     * @return A class containing every character not in this class.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public CharClass negate() {
+        boolean[] t = new boolean[256];
+        for(int i = 0; i < t.length; i++) {
+            t[i] = !table[i];
+        }
+        return new CharClass(t, fallback.negate());
+    }
+}
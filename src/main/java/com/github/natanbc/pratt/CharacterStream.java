@@ -11,8 +11,8 @@ public interface CharacterStream {
      * useful for generating helpful error messages, with context around the
      * token so it can be located easier.
      *
-     * <br>{@link #read(boolean)} should not be called after calling this method, as
-     * reading the context may result in an inconsistent state.
+     * <br>Implementations must not change the state of the stream when building
+     * the context, so it's safe to keep reading afterwards.
      *
      * @param pos Position to start highlighting.
      * @param length How many characters to highlight.
@@ -31,8 +31,8 @@ public interface CharacterStream {
      * useful for generating helpful error messages, with context around the
      * token so it can be located easier.
      *
-     * <br>{@link #read(boolean)} should not be called after calling this method, as
-     * reading the context may result in an inconsistent state.
+     * <br>Implementations must not change the state of the stream when building
+     * the context, so it's safe to keep reading afterwards.
      *
      * @param pos Position to start highlighting.
      * @param length How many characters to highlight.
@@ -43,22 +43,7 @@ public interface CharacterStream {
     @Nonnull
     @CheckReturnValue
     default String prettyContext(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around) {
-        ErrorContext context = context(pos, length, around);
-        StringBuilder sb = new StringBuilder(context.value())
-                .append('\n');
-        for(int i = 0; i < context.charsBefore(); i++) {
-            sb.append(' ');
-        }
-        if(length > 1) {
-            sb.append('└');
-            for(int i = 2; i < length; i++) {
-                sb.append('─');
-            }
-            sb.append('┘');
-        } else {
-            sb.append('^');
-        }
-        return sb.toString();
+        return SourceSnapshot.highlight(context(pos, length, around), length);
     }
     
     /**
@@ -66,8 +51,8 @@ public interface CharacterStream {
      * This method is useful for generating helpful error messages, with context
      * around the position so it can be located easier.
      *
-     * <br>{@link #read(boolean)} should not be called after calling this method, as
-     * reading the context may result in an inconsistent state.
+     * <br>Implementations must not change the state of the stream when building
+     * the context, so it's safe to keep reading afterwards.
      *
      * @param pos Position for the context.
      * @param length Length of the token.
@@ -85,8 +70,8 @@ public interface CharacterStream {
      * This method is useful for generating helpful error messages, with context
      * around the position so it can be located easier.
      *
-     * <br>{@link #read(boolean)} should not be called after calling this method, as
-     * reading the context may result in an inconsistent state.
+     * <br>Implementations must not change the state of the stream when building
+     * the context, so it's safe to keep reading afterwards.
      *
      * @param pos Position for the context.
      * @param length Length of the token.
@@ -98,6 +83,44 @@ public interface CharacterStream {
     @CheckReturnValue
     ErrorContext context(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around);
     
+    /**
+     * Returns a read-only view of the source retained so far, which can build
+     * contexts later, or from another thread, without touching this stream.
+     *
+     * <br>The default implementation returns {@link SourceSnapshot#EMPTY}, for
+     * streams that don't retain their input.
+     *
+     * @return A snapshot of the retained source.
+     */
+    @Nonnull
+    @CheckReturnValue
+    default SourceSnapshot snapshot() {
+        return SourceSnapshot.EMPTY;
+    }
+    
+    /**
+     * Returns the number of characters consumed from the start of the source,
+     * which moves backwards when going back.
+     *
+     * @return The current offset, or -1 if this stream doesn't track it.
+     */
+    @CheckReturnValue
+    default int offset() {
+        return -1;
+    }
+    
+    /**
+     * Allows input before a position to be dropped, for streams that retain it. Afterwards,
+     * going back, resetting marks or building contexts before the position may fail, while
+     * everything after it keeps working. Useful to run in bounded memory over long inputs,
+     * once the input already parsed isn't needed anymore.
+     *
+     * <br>The default implementation does nothing, for streams that don't retain their input.
+     *
+     * @param pos Position before which input isn't needed anymore.
+     */
+    default void discardBefore(@Nonnull Position pos) {}
+    
     /**
      * Returns an object representing the current position in the source.
      *
@@ -172,12 +195,44 @@ public interface CharacterStream {
      */
     void backTo(int line, int column);
     
+    /**
+     * Returns a checkpoint of the current state, which can later be restored
+     * with {@link #reset(Mark)}. Implementations that retain their input restore
+     * it in constant time, so marks are the preferred way to backtrack.
+     *
+     * <br>The default implementation stores the current {@link #pos() position}
+     * and restores it with {@link #backTo(Position)}, so it can only move backwards.
+     *
+     * @return A checkpoint of the current state.
+     */
+    @Nonnull
+    @CheckReturnValue
+    default Mark mark() {
+        return new PositionMark(this, pos());
+    }
+    
+    /**
+     * Restores a checkpoint created by {@link #mark()} on this object. After
+     * resetting, {@link #back()} can't be used until {@link #read(boolean)} is called again.
+     *
+     * @param mark Checkpoint to restore.
+     *
+     * @throws IllegalArgumentException If the mark was created by another object.
+     */
+    default void reset(@Nonnull Mark mark) {
+        if(!(mark instanceof PositionMark) || ((PositionMark)mark).owner != this) {
+            throw new IllegalArgumentException("Mark was not created by this stream");
+        }
+        backTo(((PositionMark)mark).position);
+    }
+    
     /**
      * Returns the lexer to the state it was before the last
      * call to {@link #read(boolean)}. Only one call can be
      * undone by this method.
      *
-     * <br>To undo more, you should use {@link #backTo(Position)} instead.
+     * <br>To undo more, you should use {@link #mark()} and {@link #reset(Mark)},
+     * or {@link #backTo(Position)}, instead.
      */
     void back();
     
@@ -203,4 +258,83 @@ public interface CharacterStream {
      */
     @CheckReturnValue
     int read(boolean ignoreWhitespace);
+    
+    /**
+     * Consumes characters while they belong to a class, stopping before the first
+     * one that doesn't, or at the end of the stream. Whitespace is not skipped.
+     * Afterwards, {@link #back()} can't be used until {@link #read(boolean)} is called again.
+     *
+     * <br>The default implementation reads one character at a time. Streams that
+     * retain their input override it with a loop over their buffer.
+     *
+     * @param chars Characters to consume.
+     *
+     * @return Number of characters consumed.
+     */
+    @Nonnegative
+    default int scanWhile(@Nonnull CharClass chars) {
+        int n = 0;
+        int ch;
+        while((ch = read(false)) != -1) {
+            if(!chars.matches(ch)) {
+                back();
+                break;
+            }
+            n++;
+        }
+        return n;
+    }
+    
+    /**
+     * Consumes characters until a delimiter, stopping before it, or at the end of the stream.
+     * Afterwards, {@link #back()} can't be used until {@link #read(boolean)} is called again.
+     *
+     * <br>The default implementation reads one character at a time. Streams that
+     * retain their input override it with a loop over their buffer.
+     *
+     * @param delimiter Character to stop at.
+     *
+     * @return Number of characters consumed.
+     */
+    @Nonnegative
+    default int skipUntil(char delimiter) {
+        int n = 0;
+        int ch;
+        while((ch = read(false)) != -1) {
+            if(ch == delimiter) {
+                back();
+                break;
+            }
+            n++;
+        }
+        return n;
+    }
+    
+    /**
+     * Consumes characters while they belong to a class, like {@link #scanWhile(CharClass)},
+     * and returns them.
+     *
+     * <br>The default implementation copies the characters. Streams that retain their
+     * input may return a view of their buffer instead, which is only valid until the next
+     * call to this method or until the stream is rebound to new input, so it should be
+     * converted to a string if kept.
+     *
+     * @param chars Characters to consume.
+     *
+     * @return The characters consumed.
+     */
+    @Nonnull
+    @CheckReturnValue
+    default CharSequence readRun(@Nonnull CharClass chars) {
+        StringBuilder sb = new StringBuilder();
+        int ch;
+        while((ch = read(false)) != -1) {
+            if(!chars.matches(ch)) {
+                back();
+                break;
+            }
+            sb.append((char)ch);
+        }
+        return sb;
+    }
 }
@@ -3,44 +3,140 @@ package com.github.natanbc.pratt;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * Character stream backed by a reader. Every character read is retained in a single
+ * buffer, along with the offset where each line starts, so going back to any previous
+ * position, either with {@link #backTo(int, int)} or {@link #reset(Mark)}, is a constant
+ * time operation.
+ *
+ * <br>Lines that aren't needed anymore can be dropped with {@link #discardBefore(Position)},
+ * so long inputs can be read in memory bounded by the longest span still needed.
+ */
 public class DefaultCharacterStream implements CharacterStream {
-    protected final Map<Integer, StringBuilder> lineMap = new HashMap<>();
-    protected final CharHistory unreadChars = new CharHistory(0);
-    protected final Reader reader;
+    protected Reader reader;
+    /** Characters loaded from the reader so far. Only the first {@link #size} are valid. */
+    protected char[] buffer = new char[1024];
+    /** Offset in the buffer where each known line starts, from {@link #firstLine}. Only the first {@link #lineCount} are valid. */
+    protected int[] lineStarts = new int[16];
+    /** Line starting at the start of the buffer, after earlier ones were {@link #discardBefore(Position) discarded}. */
+    protected int firstLine = 1;
+    /** Characters {@link #discardBefore(Position) discarded} before the start of the buffer. */
+    protected long discarded;
+    protected int size;
+    protected int offset;
+    protected int lineCount = 1;
     protected int line = 1;
     protected int column = 0;
+    protected int lastOffset = -1;
     protected int lastLine = -1;
     protected int lastColumn = -1;
+    /** Budget checked whenever more characters are loaded, if any. */
+    protected ParseBudget budget;
+    /** Characters skipped by {@link #read(boolean) read(true)}. */
+    protected TriviaPolicy trivia = TriviaPolicy.WHITESPACE;
+    /** Whether or not the buffer is used by a {@link SourceSnapshot}, and must be copied before being modified in place. */
+    protected boolean shared;
+    //view returned by readRun, reused so reading runs doesn't depend on escape analysis to avoid allocating
+    private final Run run = new Run();
     
     public DefaultCharacterStream(Reader reader) {
         this.reader = reader;
     }
     
+    /**
+     * Creates a stream without a reader, for subclasses that load characters
+     * from another source by overriding {@link #fill()}.
+     */
+    protected DefaultCharacterStream() {
+        this.reader = null;
+    }
+    
+    /**
+     * Returns a context built only from the characters read from the reader so far,
+     * so no more input is read. Characters after the token that weren't loaded yet
+     * are not included.
+     */
     @Nonnull
     @CheckReturnValue
     @Override
     public ErrorContext context(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around) {
-        if(pos.line() == line) {
-            int l = line;
-            int remaining = length + around;
-            //read until next line or EOF (to ensure there are enough characters after the token)
-            while(line == l && remaining > 0) {
-                if(read(true) == -1) break;
-                remaining--;
-            }
+        //built from the live buffers, as a snapshot would make the next reset allocate new ones
+        return SourceSnapshot.context(buffer, size, lineStarts, lineCount, firstLine, pos, length, around);
+    }
+    
+    /**
+     * Sets the budget checked whenever more characters are loaded. Usually
+     * set through {@link Lexer#budget(ParseBudget)}.
+     *
+     * @param budget Budget to check, or null to remove the current one.
+     */
+    public void budget(@Nullable ParseBudget budget) {
+        this.budget = budget;
+    }
+    
+    /**
+     * Sets the characters skipped by {@link #read(boolean) read(true)}. Usually
+     * set through {@link Lexer#trivia(TriviaPolicy)}.
+     *
+     * @param trivia Policy to use.
+     */
+    public void trivia(@Nonnull TriviaPolicy trivia) {
+        this.trivia = trivia;
+    }
+    
+    @CheckReturnValue
+    @Override
+    public int offset() {
+        return (int)(discarded + offset);
+    }
+    
+    /**
+     * Rebinds this stream to a new reader, keeping the buffers already allocated.
+     * Marks and positions from the previous input must not be used afterwards.
+     * Subclasses loading characters from other sources should override this method
+     * to throw {@link UnsupportedOperationException}.
+     *
+     * @param reader Reader to use.
+     */
+    public void reset(@Nonnull Reader reader) {
+        this.reader = reader;
+        clear();
+    }
+    
+    /**
+     * Discards all characters loaded and returns to the start of the stream.
+     * Buffers still used by a {@link #snapshot() snapshot} are replaced instead of reused.
+     */
+    protected void clear() {
+        if(shared) {
+            buffer = new char[buffer.length];
+            lineStarts = new int[lineStarts.length];
+            shared = false;
         }
-        StringBuilder buffer = lineBuffer(pos.line());
-        int before = Math.min(pos.column() - 1, around);
-        int after = Math.min(buffer.length() - (pos.column() + length), around);
-        int max = buffer.charAt(buffer.length() - 1) == '\n' ? buffer.length() - 1 : buffer.length();
-        String str = buffer.substring(Math.max(pos.column() - around - 1, 0),
-                Math.min(pos.column() + around + length - 1, max));
-        return new ErrorContext(before, after, str);
+        size = 0;
+        offset = 0;
+        discarded = 0;
+        firstLine = 1;
+        lineCount = 1;
+        line = 1;
+        column = 0;
+        lastOffset = -1;
+        lastLine = -1;
+        lastColumn = -1;
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public SourceSnapshot snapshot() {
+        //the snapshot shares the arrays, which is safe as long as the valid part isn't modified in place
+        shared = true;
+        return new SourceSnapshot(buffer, size, lineStarts, lineCount, firstLine);
     }
     
     @Nonnull
@@ -70,6 +166,36 @@ public class DefaultCharacterStream implements CharacterStream {
         return peek(ignoreWhitespace) == ch;
     }
     
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public Mark mark() {
+        return new StreamMark(this, discarded + offset, line, column);
+    }
+    
+    /**
+     * Restores a checkpoint created by {@link #mark()}.
+     *
+     * @throws IllegalArgumentException If the mark was created by another object, or
+     *                                  its position was {@link #discardBefore(Position) discarded}.
+     */
+    @Override
+    public void reset(@Nonnull Mark mark) {
+        if(!(mark instanceof StreamMark) || ((StreamMark)mark).owner != this) {
+            throw new IllegalArgumentException("Mark was not created by this stream");
+        }
+        StreamMark m = (StreamMark)mark;
+        if(m.offset < discarded) {
+            throw new IllegalArgumentException("Mark is in discarded input");
+        }
+        offset = (int)(m.offset - discarded);
+        line = m.line;
+        column = m.column;
+        lastOffset = -1;
+        lastLine = -1;
+        lastColumn = -1;
+    }
+    
     @Override
     public void backTo(@Nonnull Position pos) {
         backTo(pos.line(), pos.column());
@@ -80,28 +206,13 @@ public class DefaultCharacterStream implements CharacterStream {
         if(line > this.line || (line == this.line && column > this.column)) {
             throw new IllegalArgumentException("Cannot go back to a position ahead of the current!");
         }
-        while(line < this.line || column < this.column) {
-            char last;
-            StringBuilder sb = lineBuffer();
-            int len = sb.length();
-            if(len == 0) {
-                sb = lineBuffer(this.line - 1);
-                len = sb.length();
-            }
-            if(len > 0) {
-                last = sb.charAt(len - 1);
-                sb.setLength(len - 1);
-            } else {
-                last = '\n';
-            }
-            if(last == '\n') {
-                this.line--;
-                this.column = lineBuffer().length();
-            } else {
-                this.column--;
-            }
-            unreadChars.insert(last);
+        int i = line - firstLine;
+        if(i < 0 || column < 0 || (i + 1 < lineCount && lineStarts[i] + column >= lineStarts[i + 1])) {
+            throw new IllegalArgumentException("Position (" + line + ", " + column + ") is not in the source!");
         }
+        this.offset = lineStarts[i] + column;
+        this.line = line;
+        this.column = column;
     }
     
     @Override
@@ -109,7 +220,13 @@ public class DefaultCharacterStream implements CharacterStream {
         if(lastLine == -1) {
             throw new IllegalStateException("Cannot go back more than one call to read()!");
         }
-        backTo(lastLine, lastColumn);
+        if(lastOffset > offset) {
+            throw new IllegalArgumentException("Cannot go back to a position ahead of the current!");
+        }
+        offset = lastOffset;
+        line = lastLine;
+        column = lastColumn;
+        lastOffset = -1;
         lastLine = -1;
         lastColumn = -1;
     }
@@ -117,58 +234,145 @@ public class DefaultCharacterStream implements CharacterStream {
     @Deprecated
     @Override
     public void unread(@Nonnegative int ch) {
-        StringBuilder sb = lineBuffer();
-        int len = sb.length();
-        if(len > 0) {
-            sb.setLength(len - 1);
-        }
-        if(ch == '\n') {
-            this.line--;
-            this.column = lineBuffer().length();
+        if(offset == 0) {
+            throw new IllegalStateException("Cannot unread before the start of the stream!");
+        }
+        if(shared) {
+            buffer = buffer.clone();
+            shared = false;
+        }
+        if(buffer[--offset] == '\n') {
+            line--;
+            column = offset - lineStarts[line - firstLine];
         } else {
-            column -= 1;
+            column--;
         }
-        unreadChars.insert((char)ch);
+        buffer[offset] = (char)ch;
     }
     
+    /**
+     * Returns the next character in the stream. When ignoring whitespace, every
+     * character and comment defined by the {@link #trivia(TriviaPolicy) trivia policy}
+     * is skipped.
+     *
+     * @throws IllegalArgumentException If a block comment is not terminated.
+     */
     @CheckReturnValue
     @Override
     public int read(boolean ignoreWhitespace) {
+        lastOffset = offset;
         lastLine = line;
         lastColumn = column;
-        try {
-            while(true) {
-                int c = unreadChars.size() > 0 ? unreadChars.remove() : reader.read();
-                if(c == -1) {
-                    return -1;
-                }
-                char ch = (char)c;
-                lineBuffer().append(ch);
+        if(!ignoreWhitespace) {
+            if(offset == size && !fill()) {
+                return -1;
+            }
+            char ch = buffer[offset++];
+            if(ch == '\n') {
+                newLine();
+            } else {
+                column++;
+            }
+            return ch;
+        }
+        CharClass whitespace = trivia.whitespace;
+        boolean comments = trivia.hasComments();
+        while(true) {
+            if(offset == size && !fill()) {
+                return -1;
+            }
+            char ch = buffer[offset];
+            if(whitespace.matches(ch)) {
+                offset++;
                 if(ch == '\n') {
-                    line++;
-                    column = 0;
-                    if(!ignoreWhitespace) {
-                        return ch;
-                    }
+                    newLine();
                 } else {
                     column++;
-                    if(ignoreWhitespace && Character.isWhitespace(ch)) {
-                        continue;
-                    }
-                    return ch;
                 }
+                continue;
+            }
+            if(comments && trivia.commentStart.matches(ch) && skipComment()) {
+                continue;
+            }
+            offset++;
+            if(ch == '\n') {
+                newLine();
+            } else {
+                column++;
+            }
+            return ch;
+        }
+    }
+    
+    @Nonnegative
+    @Override
+    public int scanWhile(@Nonnull CharClass chars) {
+        int start = offset;
+        while(true) {
+            if(offset == size && !fill()) {
+                break;
+            }
+            char ch = buffer[offset];
+            if(!chars.matches(ch)) {
+                break;
+            }
+            offset++;
+            if(ch == '\n') {
+                newLine();
+            } else {
+                column++;
             }
-        } catch(IOException e) {
-            throw new IllegalStateException(e);
         }
+        lastOffset = -1;
+        lastLine = -1;
+        lastColumn = -1;
+        return offset - start;
+    }
+    
+    @Nonnegative
+    @Override
+    public int skipUntil(char delimiter) {
+        int start = offset;
+        while(true) {
+            if(offset == size && !fill()) {
+                break;
+            }
+            char ch = buffer[offset];
+            if(ch == delimiter) {
+                break;
+            }
+            offset++;
+            if(ch == '\n') {
+                newLine();
+            } else {
+                column++;
+            }
+        }
+        lastOffset = -1;
+        lastLine = -1;
+        lastColumn = -1;
+        return offset - start;
     }
     
     /**
-     * Returns the buffer containing the characters read so far from the current line.
-     *
-     * <br>This object is managed by the lexer, so it should not be modified.
+     * Consumes characters while they belong to a class and returns a view of them
+     * in the buffer, without copying or allocating. The view is reused, so it's only
+     * valid until the next call to this method, until the stream is
+     * {@link #reset(Reader) rebound} to new input, or until input is {@link #discardBefore(Position) discarded}.
+     */
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public CharSequence readRun(@Nonnull CharClass chars) {
+        int n = scanWhile(chars);
+        //a grown buffer keeps the old contents, so the view is taken after scanning
+        return run.set(buffer, offset - n, n);
+    }
+    
+    /**
+     * Returns a copy of the characters read so far from the current line.
      *
-     * @return The buffer containing the current line so far.
+     * @return The characters of the current line read so far.
      */
     @Nonnull
     @CheckReturnValue
@@ -177,17 +381,255 @@ public class DefaultCharacterStream implements CharacterStream {
     }
     
     /**
-     * Returns the buffer containing the characters read so far from the provided line.
-     *
-     * <br>This object is managed by the lexer, so it should not be modified.
+     * Returns a copy of the characters read so far from the provided line.
      *
      * @param line Line wanted.
      *
-     * @return The buffer containing the provided line so far.
+     * @return The characters of the provided line read so far, empty if it was discarded.
      */
     @Nonnull
     @CheckReturnValue
     public StringBuilder lineBuffer(int line) {
-        return lineMap.computeIfAbsent(line, __ -> new StringBuilder());
+        StringBuilder sb = new StringBuilder();
+        if(line < firstLine || line > this.line) {
+            return sb;
+        }
+        int start = lineStarts[line - firstLine];
+        int end = line < this.line ? lineStarts[line - firstLine + 1] : offset;
+        return sb.append(buffer, start, end - start);
+    }
+    
+    /**
+     * Drops the lines before the provided position, keeping the current line. Positions
+     * and marks keep referring to the same input afterwards, while going back to discarded
+     * lines throws, and contexts for them are empty.
+     *
+     * <br>Lines are only dropped once they make up at least half of the buffer, so the
+     * remaining characters are moved at most once per character discarded.
+     */
+    @Override
+    public void discardBefore(@Nonnull Position pos) {
+        int k = Math.min(pos.line(), line) - firstLine;
+        if(k <= 0) {
+            return;
+        }
+        int drop = lineStarts[k];
+        if(drop < buffer.length / 2) {
+            return;
+        }
+        //a snapshot still uses the current arrays, so the kept part is moved to new ones
+        char[] chars = shared ? new char[buffer.length] : buffer;
+        int[] starts = shared ? new int[lineStarts.length] : lineStarts;
+        System.arraycopy(buffer, drop, chars, 0, size - drop);
+        for(int i = k; i < lineCount; i++) {
+            starts[i - k] = lineStarts[i] - drop;
+        }
+        buffer = chars;
+        lineStarts = starts;
+        shared = false;
+        size -= drop;
+        offset -= drop;
+        discarded += drop;
+        lineCount -= k;
+        firstLine += k;
+        if(lastOffset >= drop) {
+            lastOffset -= drop;
+        } else {
+            lastOffset = -1;
+            lastLine = -1;
+            lastColumn = -1;
+        }
+    }
+    
+    /**
+     * Updates the line tracking after a line break was consumed.
+     */
+    protected void newLine() {
+        line++;
+        column = 0;
+        if(line - firstLine >= lineCount) {
+            if(lineCount == lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+            }
+            lineStarts[lineCount++] = offset;
+        }
+    }
+    
+    /**
+     * Skips a comment starting at the current offset, if any.
+     *
+     * @return Whether or not a comment was skipped.
+     */
+    private boolean skipComment() {
+        TriviaPolicy t = trivia;
+        for(char[] prefix : t.lineComments) {
+            if(startsWith(prefix)) {
+                skip(prefix.length);
+                //the line break is left for the whitespace check, or returned to the lexer
+                while(true) {
+                    if(offset == size && !fill()) {
+                        return true;
+                    }
+                    if(buffer[offset] == '\n') {
+                        return true;
+                    }
+                    offset++;
+                    column++;
+                }
+            }
+        }
+        for(int i = 0; i < t.blockOpen.length; i++) {
+            char[] open = t.blockOpen[i];
+            if(!startsWith(open)) {
+                continue;
+            }
+            //same convention as token positions, the column after the first character
+            int startLine = line;
+            int startColumn = column + 1;
+            skip(open.length);
+            char[] close = t.blockClose[i];
+            char first = close[0];
+            while(true) {
+                if(offset == size && !fill()) {
+                    Position pos = new Position(startLine, startColumn);
+                    throw new IllegalArgumentException("Unterminated comment at line " + startLine +
+                            ", column " + startColumn + "\n\n" + prettyContext(pos, open.length));
+                }
+                if(buffer[offset] == first && startsWith(close)) {
+                    skip(close.length);
+                    return true;
+                }
+                if(buffer[offset++] == '\n') {
+                    newLine();
+                } else {
+                    column++;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private boolean startsWith(char[] chars) {
+        while(size - offset < chars.length) {
+            if(!fill()) {
+                return false;
+            }
+        }
+        for(int i = 0; i < chars.length; i++) {
+            if(buffer[offset + i] != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void skip(int n) {
+        for(int i = 0; i < n; i++) {
+            if(buffer[offset++] == '\n') {
+                newLine();
+            } else {
+                column++;
+            }
+        }
+    }
+    
+    /**
+     * Loads more characters from the reader into the buffer, starting at {@link #size}.
+     * Subclasses overriding this method should call {@link #ensureCapacity(int)} before
+     * writing to the buffer, load no more than the {@link ParseBudget#remainingChars(long) remaining}
+     * characters of the {@link #budget} unless none remain, and check it afterwards, counting the
+     * {@link #discarded} characters along with the new size.
+     *
+     * @return False if the reader has no more characters.
+     */
+    protected boolean fill() {
+        ensureCapacity(1);
+        int max = buffer.length - size;
+        if(budget != null) {
+            //once the limit is reached, a single character is read to find out whether the input goes past it
+            max = (int)Math.max(1, Math.min(max, budget.remainingChars(discarded + size)));
+        }
+        try {
+            int n;
+            do {
+                n = reader.read(buffer, size, max);
+            } while(n == 0);
+            if(n < 0) {
+                return false;
+            }
+            size += n;
+            if(budget != null) {
+                budget.chars(discarded + size);
+            }
+            return true;
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Grows the buffer if needed, so at least {@code n} more characters can be stored.
+     *
+     * @param n Number of characters that will be stored.
+     */
+    protected void ensureCapacity(int n) {
+        if(buffer.length - size < n) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + n));
+        }
+    }
+    
+    private static final class Run implements CharSequence {
+        private char[] chars;
+        private int start;
+        private int length;
+    
+        Run set(char[] chars, int start, int length) {
+            this.chars = chars;
+            this.start = start;
+            this.length = length;
+            return this;
+        }
+    
+        @Override
+        public int length() {
+            return length;
+        }
+    
+        @Override
+        public char charAt(int index) {
+            if(index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index = " + index + ", length = " + length);
+            }
+            return chars[start + index];
+        }
+    
+        @Nonnull
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if(start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start = " + start + ", end = " + end + ", length = " + length);
+            }
+            return new String(chars, this.start + start, end - start);
+        }
+    
+        @Nonnull
+        @Override
+        public String toString() {
+            return new String(chars, start, length);
+        }
+    }
+    
+    private static final class StreamMark implements Mark {
+        private final DefaultCharacterStream owner;
+        private final long offset;
+        private final int line;
+        private final int column;
+    
+        StreamMark(DefaultCharacterStream owner, long offset, int line, int column) {
+            this.owner = owner;
+            this.offset = offset;
+            this.line = line;
+            this.column = column;
+        }
     }
 }
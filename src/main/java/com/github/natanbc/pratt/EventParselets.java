@@ -0,0 +1,113 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Factories for parselets that emit events to an {@link EventSink} instead of building
+ * a tree. Each parselet returns the sink it received, so parsing allocates nothing
+ * per node besides the tokens themselves.
+ */
+public final class EventParselets {
+    private static final PrefixParselet<EventSink, EventSink> LEAF = (sink, __, token) -> {
+        sink.leaf(token);
+        return sink;
+    };
+    
+    private EventParselets() {}
+    
+    /**
+     * Returns a parselet emitting a {@link EventSink#leaf(Token) leaf} event for the token.
+     *
+     * @return A parselet for leaf tokens.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static PrefixParselet<EventSink, EventSink> leaf() {
+        return LEAF;
+    }
+    
+    /**
+     * Returns a parselet for a prefix operator, which parses a single operand
+     * with the provided precedence.
+     *
+     * @param precedence Precedence used to parse the operand.
+     *
+     * @return A parselet for the prefix operator.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static PrefixParselet<EventSink, EventSink> prefix(@Nonnegative int precedence) {
+        return (sink, parser, token) -> {
+            sink.enter(token);
+            parser.parseExpression(sink, precedence);
+            sink.exitPrefix(token);
+            return sink;
+        };
+    }
+    
+    /**
+     * Returns a parselet for a group, such as parenthesis, which parses an expression
+     * followed by a closing token.
+     *
+     * @param close Kind of the token closing the group.
+     *
+     * @return A parselet for the group.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static PrefixParselet<EventSink, EventSink> group(@Nonnull TokenKind close) {
+        return (sink, parser, token) -> {
+            sink.enter(token);
+            parser.parseExpression(sink);
+            parser.expect(close);
+            sink.exitPrefix(token);
+            return sink;
+        };
+    }
+    
+    /**
+     * Returns a left associative infix operator parselet.
+     *
+     * @param precedence Precedence of the operator.
+     *
+     * @return A parselet for the infix operator.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static InfixParselet<EventSink, EventSink> infix(@Nonnegative int precedence) {
+        return infix(precedence, false);
+    }
+    
+    /**
+     * Returns an infix operator parselet.
+     *
+     * @param precedence Precedence of the operator.
+     * @param rightAssociative Whether or not the operator is right associative.
+     *
+     * @return A parselet for the infix operator.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static InfixParselet<EventSink, EventSink> infix(@Nonnegative int precedence, boolean rightAssociative) {
+        return new InfixParselet<EventSink, EventSink>() {
+            @Nonnegative
+            @CheckReturnValue
+            @Override
+            public int precedence() {
+                return precedence;
+            }
+    
+            @Nonnull
+            @CheckReturnValue
+            @Override
+            public EventSink parse(EventSink sink, @Nonnull Parser<EventSink, EventSink> parser, @Nonnull EventSink left, @Nonnull Token token) {
+                sink.operator(token);
+                parser.parseExpression(sink, rightAssociative ? Math.max(precedence - 1, 0) : precedence);
+                sink.exitInfix(token);
+                return sink;
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives parse events instead of a tree being built, similar to SAX for XML.
+ * Used as both context and result of a {@code Parser<EventSink, EventSink>} with
+ * parselets from {@link EventParselets}, which return the sink itself, so no object
+ * is created per node.
+ *
+ * <br>Events are emitted in source order. Since the left operand of an infix operator
+ * is parsed before the operator is seen, infix nodes don't have an {@link #enter(Token) enter}
+ * event: the left operand's events are followed by {@link #operator(Token) operator},
+ * the right operand's events and {@link #exitInfix(Token) exitInfix}. Prefix and infix nodes
+ * end with different events, so sinks can tell them apart without tracking open nodes.
+ *
+ * <br>Every method does nothing by default, so sinks only implement the events they need.
+ * Sinks hold no parser state, so they can be reused across parses.
+ */
+public interface EventSink {
+    /**
+     * Called when a prefix node starts, before its operands are parsed.
+     *
+     * @param token Token that started the node.
+     */
+    default void enter(@Nonnull Token token) {}
+    
+    /**
+     * Called after the left operand of an infix node, before its right operand is parsed.
+     *
+     * @param token Operator token.
+     */
+    default void operator(@Nonnull Token token) {}
+    
+    /**
+     * Called when a prefix node ends, after all of its operands. Matches an {@link #enter(Token) enter} event.
+     *
+     * @param token Token that started the node.
+     */
+    default void exitPrefix(@Nonnull Token token) {}
+    
+    /**
+     * Called when an infix node ends, after its right operand. Matches an {@link #operator(Token) operator} event.
+     *
+     * @param token Operator token.
+     */
+    default void exitInfix(@Nonnull Token token) {}
+    
+    /**
+     * Called for tokens that form a node by themselves, such as literals.
+     *
+     * @param token Leaf token.
+     */
+    default void leaf(@Nonnull Token token) {}
+}
@@ -0,0 +1,177 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Recognizes keywords while reading words from a {@link CharacterStream}, without
+ * creating a string per word. Keywords are compiled into a trie which is walked over
+ * the characters read, so keyword tokens reuse the keyword string, and text is only
+ * built for identifiers that diverge from every keyword.
+ *
+ * <br>Tables are immutable and can be shared between lexers and threads.
+ */
+public final class KeywordTable {
+    private static final int ROOT = 0;
+    
+    private final CharClass wordChar;
+    //sorted transition characters of each node
+    private final char[][] labels;
+    //target node of each transition
+    private final int[][] children;
+    //characters from the root to each node
+    private final String[] prefixes;
+    //kind of the keyword ending at each node, or null
+    private final TokenKind[] kinds;
+    
+    /**
+     * Compiles a keyword table.
+     *
+     * @param keywords Keywords and the kinds of their tokens.
+     * @param wordChar Characters that can be part of a word. Words end at the
+     *                 first character not in this class.
+     *
+     * @throws IllegalArgumentException If a keyword is empty or has characters not in {@code wordChar}.
+     */
+    public KeywordTable(@Nonnull Map<String, ? extends TokenKind> keywords, @Nonnull CharClass wordChar) {
+        this.wordChar = wordChar;
+        List<StringBuilder> nodeLabels = new ArrayList<>();
+        List<List<Integer>> nodeChildren = new ArrayList<>();
+        List<String> nodePrefixes = new ArrayList<>();
+        List<TokenKind> nodeKinds = new ArrayList<>();
+        nodeLabels.add(new StringBuilder());
+        nodeChildren.add(new ArrayList<>());
+        nodePrefixes.add("");
+        nodeKinds.add(null);
+        //sorted insertion keeps the labels of every node sorted
+        for(Map.Entry<String, ? extends TokenKind> e : new TreeMap<>(keywords).entrySet()) {
+            String keyword = e.getKey();
+            if(keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keywords cannot be empty");
+            }
+            int node = ROOT;
+            for(int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if(!wordChar.matches(c)) {
+                    throw new IllegalArgumentException("Keyword '" + keyword + "' has non word character '" + c + "'");
+                }
+                int idx = nodeLabels.get(node).indexOf(String.valueOf(c));
+                if(idx == -1) {
+                    nodeLabels.get(node).append(c);
+                    nodeChildren.get(node).add(nodeLabels.size());
+                    node = nodeLabels.size();
+                    nodeLabels.add(new StringBuilder());
+                    nodeChildren.add(new ArrayList<>());
+                    nodePrefixes.add(keyword.substring(0, i + 1));
+                    nodeKinds.add(null);
+                } else {
+                    node = nodeChildren.get(node).get(idx);
+                }
+            }
+            nodeKinds.set(node, e.getValue());
+            //token values for keywords share the same instance
+            nodePrefixes.set(node, keyword);
+        }
+        int size = nodeLabels.size();
+        this.labels = new char[size][];
+        this.children = new int[size][];
+        for(int i = 0; i < size; i++) {
+            labels[i] = nodeLabels.get(i).toString().toCharArray();
+            children[i] = nodeChildren.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.prefixes = nodePrefixes.toArray(new String[0]);
+        this.kinds = nodeKinds.toArray(new TokenKind[0]);
+    }
+    
+    /**
+     * Reads a word and returns a token for it. The word starts with an already read
+     * character and continues until the first character not in the word class, which
+     * is left in the stream. The rest of the word is read with {@link CharacterStream#readRun(CharClass)}.
+     *
+     * @param stream Stream to read from.
+     * @param first First character of the word, already read from the stream.
+     * @param pos Position of the token.
+     * @param identifierKind Kind of the token if the word isn't a keyword.
+     *
+     * @return A token of the keyword's kind, or of {@code identifierKind} if the word isn't a keyword.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Token read(@Nonnull CharacterStream stream, int first, @Nonnull Position pos, @Nonnull TokenKind identifierKind) {
+        return read(stream, first, pos, identifierKind, null);
+    }
+    
+    /**
+     * Reads a word and returns a token for it, interning the text of identifiers.
+     * The word starts with an already read character and continues until the first
+     * character not in the word class, which is left in the stream.
+     *
+     * @param stream Stream to read from.
+     * @param first First character of the word, already read from the stream.
+     * @param pos Position of the token.
+     * @param identifierKind Kind of the token if the word isn't a keyword.
+     * @param symbols Table used to intern identifiers, or null to not intern them.
+     *
+     * @return A token of the keyword's kind, or of {@code identifierKind} if the word isn't a keyword.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Token read(@Nonnull CharacterStream stream, int first, @Nonnull Position pos,
+                      @Nonnull TokenKind identifierKind, @Nullable SymbolTable symbols) {
+        CharSequence rest = stream.readRun(wordChar);
+        int node = child(ROOT, first);
+        for(int i = 0; i < rest.length() && node != -1; i++) {
+            node = child(node, rest.charAt(i));
+        }
+        if(node != -1) {
+            //identifiers that are a prefix of a keyword reuse the prefix string too
+            TokenKind kind = kinds[node];
+            return new Token(kind == null ? identifierKind : kind, pos, prefixes[node]);
+        }
+        if(symbols != null) {
+            return new Token(identifierKind, pos, symbols.intern((char)first, rest));
+        }
+        return new Token(identifierKind, pos, new StringBuilder(rest.length() + 1).append((char)first).append(rest).toString());
+    }
+    
+    /**
+     * Returns the kind of a keyword.
+     *
+     * @param word Word to look up.
+     *
+     * @return The kind of the keyword, or null if the word isn't a keyword.
+     */
+    @Nullable
+    @CheckReturnValue
+    public TokenKind kind(@Nonnull CharSequence word) {
+        int node = ROOT;
+        for(int i = 0; i < word.length() && node != -1; i++) {
+            node = child(node, word.charAt(i));
+        }
+        return node == -1 ? null : kinds[node];
+    }
+    
+    private int child(int node, int ch) {
+        char[] l = labels[node];
+        if(ch < 0 || ch > Character.MAX_VALUE) {
+            return -1;
+        }
+        int idx = l.length < 8 ? indexOf(l, (char)ch) : Arrays.binarySearch(l, (char)ch);
+        return idx < 0 ? -1 : children[node][idx];
+    }
+    
+    private static int indexOf(char[] array, char ch) {
+        for(int i = 0; i < array.length; i++) {
+            if(array[i] == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Histogram of durations in nanoseconds, with a fixed set of buckets: four per power
+ * of two, so values are stored with at most 25% error. Recording is a few arithmetic
+ * operations and an array increment, and histograms from different threads can be
+ * {@link #merge(LatencyHistogram) merged} since they all share the same buckets.
+ *
+ * <br>Instances are not thread safe, each thread should record to its own histogram.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 248;
+    
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+    
+    /**
+     * Records a duration. Negative values are recorded as zero.
+     *
+     * @param nanos Duration to record.
+     */
+    public void record(long nanos) {
+        if(nanos < 0) nanos = 0;
+        counts[bucket(nanos)]++;
+        count++;
+        total += nanos;
+        if(nanos > max) max = nanos;
+    }
+    
+    /**
+     * Adds every value recorded by another histogram to this one.
+     *
+     * @param other Histogram to merge.
+     */
+    public void merge(@Nonnull LatencyHistogram other) {
+        for(int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+    
+    /**
+     * Discards every value recorded.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+    
+    /**
+     * @return Number of values recorded.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public long count() {
+        return count;
+    }
+    
+    /**
+     * @return Sum of every value recorded, in nanoseconds.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public long total() {
+        return total;
+    }
+    
+    /**
+     * @return Largest value recorded, in nanoseconds.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public long max() {
+        return max;
+    }
+    
+    /**
+     * @return Mean of the values recorded, in nanoseconds.
+     */
+    @CheckReturnValue
+    public double mean() {
+        return count == 0 ? 0 : (double)total / count;
+    }
+    
+    /**
+     * Returns an upper bound for the given percentile of the recorded values.
+     *
+     * @param percentile Percentile wanted, between 0 and 100.
+     *
+     * @return The highest value of the bucket containing the percentile, in nanoseconds.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public long percentile(double percentile) {
+        if(count == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long)Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if(seen >= wanted) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+    
+    private static int bucket(long v) {
+        if(v < 4) {
+            return (int)v;
+        }
+        int e = 63 - Long.numberOfLeadingZeros(v);
+        return (e - 1) * 4 + (int)((v >>> (e - 2)) & 3);
+    }
+    
+    private static long upperBound(int bucket) {
+        if(bucket < 4) {
+            return bucket;
+        }
+        int e = bucket / 4 + 1;
+        long lower = (long)(4 + (bucket & 3)) << (e - 2);
+        return lower + (1L << (e - 2)) - 1;
+    }
+}
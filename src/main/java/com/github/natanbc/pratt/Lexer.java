@@ -3,14 +3,19 @@ package com.github.natanbc.pratt;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.PushbackReader;
 import java.io.Reader;
 /**
  * Transforms the data in a reader into a stream of tokens.
  */
 public abstract class Lexer implements CharacterStream {
-    protected final CharacterStream realStream;
+    protected CharacterStream realStream;
     protected Token nextToken;
+    protected ParseBudget budget;
+    protected Profiler profiler;
+    /** Policy set with {@link #trivia(TriviaPolicy)}, or null if streams keep their own. */
+    protected TriviaPolicy trivia;
     
     public Lexer(@Nonnull CharacterStream stream) {
         this.realStream = stream;
@@ -25,6 +30,111 @@ public abstract class Lexer implements CharacterStream {
         this((Reader)reader);
     }
     
+    /**
+     * Discards the {@link #push(Token) pushed} token. Lexers that keep additional
+     * state between tokens should override this method, calling the super implementation.
+     * Called when rebinding the lexer to new input.
+     */
+    public void reset() {
+        nextToken = null;
+        if(budget != null) {
+            budget.start();
+        }
+    }
+    
+    /**
+     * Attaches a budget to this lexer and {@link ParseBudget#start() starts} it. Tokens are
+     * counted by this lexer, characters by {@link DefaultCharacterStream default streams},
+     * and expression depth by {@link Parser parsers} using this lexer.
+     *
+     * @param budget Budget to use, or null to remove the current one.
+     */
+    public void budget(@Nullable ParseBudget budget) {
+        this.budget = budget;
+        if(realStream instanceof DefaultCharacterStream) {
+            ((DefaultCharacterStream)realStream).budget(budget);
+        }
+        if(budget != null) {
+            budget.start();
+        }
+    }
+    
+    /**
+     * @return The budget attached to this lexer, if any.
+     */
+    @Nullable
+    @CheckReturnValue
+    public ParseBudget budget() {
+        return budget;
+    }
+    
+    /**
+     * Sets the characters skipped by {@link #read(boolean) read(true)}, such as comments,
+     * so {@link #parse()} only sees significant characters. Requires the stream to be a
+     * {@link DefaultCharacterStream}, which keeps the policy when rebound to new input.
+     *
+     * @param trivia Policy to use.
+     *
+     * @throws UnsupportedOperationException If the stream doesn't support trivia policies.
+     */
+    public void trivia(@Nonnull TriviaPolicy trivia) {
+        if(!(realStream instanceof DefaultCharacterStream)) {
+            throw new UnsupportedOperationException("Trivia policies require a DefaultCharacterStream");
+        }
+        this.trivia = trivia;
+        ((DefaultCharacterStream)realStream).trivia(trivia);
+    }
+    
+    /**
+     * Times every call to {@link #parse()} with the provided profiler.
+     *
+     * @param profiler Profiler to use, or null to stop profiling.
+     *
+     * @see Parser#profile(Profiler)
+     */
+    public void profile(@Nullable Profiler profiler) {
+        this.profiler = profiler;
+    }
+    
+    /**
+     * Rebinds the current stream to a new reader, reusing its buffers. The stream keeps
+     * its type, so this requires one reading from readers, such as a {@link DefaultCharacterStream}.
+     * Use {@link #reset(CharacterStream)} to switch to another stream.
+     *
+     * @param reader Reader to use.
+     *
+     * @throws UnsupportedOperationException If the current stream can't read from a reader.
+     *
+     * @see DefaultCharacterStream#reset(Reader)
+     */
+    public void reset(@Nonnull Reader reader) {
+        if(!(realStream instanceof DefaultCharacterStream)) {
+            throw new UnsupportedOperationException(realStream.getClass().getName() + " can't be rebound to a reader");
+        }
+        ((DefaultCharacterStream)realStream).reset(reader);
+        reset();
+    }
+    
+    /**
+     * Rebinds this lexer to a new stream. The budget attached to this lexer, and the
+     * trivia policy if one was set with {@link #trivia(TriviaPolicy)}, are applied to
+     * the stream; otherwise it keeps its own.
+     *
+     * @param stream Stream to use.
+     */
+    public void reset(@Nonnull CharacterStream stream) {
+        realStream = stream;
+        if(stream instanceof DefaultCharacterStream) {
+            if(budget != null) {
+                ((DefaultCharacterStream)stream).budget(budget);
+            }
+            if(trivia != null) {
+                ((DefaultCharacterStream)stream).trivia(trivia);
+            }
+        }
+        reset();
+    }
+    
     /**
      * Parses the next token in the source. If the end is reached, this method
      * <b>must</b> return a token with the {@link #eofKind() EOF kind}.
@@ -59,7 +169,7 @@ public abstract class Lexer implements CharacterStream {
             nextToken = null;
             return t;
         }
-        return parse();
+        return lex();
     }
     
     /**
@@ -71,7 +181,22 @@ public abstract class Lexer implements CharacterStream {
             return;
         }
         //noinspection ResultOfMethodCallIgnored
-        parse();
+        lex();
+    }
+    
+    /**
+     * Returns the kind of the next token, without consuming it. The token
+     * is stored as if it had been {@link #push(Token) pushed}.
+     *
+     * @return The kind of the next token.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public TokenKind peekKind() {
+        if(nextToken == null) {
+            nextToken = lex();
+        }
+        return nextToken.kind();
     }
     
     /**
@@ -95,8 +220,7 @@ public abstract class Lexer implements CharacterStream {
      * useful for generating helpful error messages, with context around the
      * token so it can be located easier.
      *
-     * <br>{@link #next()} should not be called after calling this method, as
-     * reading the context may result in an inconsistent state.
+     * <br>Building the context doesn't change the state of the lexer.
      *
      * @param token Token to highlight.
      *
@@ -114,8 +238,7 @@ public abstract class Lexer implements CharacterStream {
      * useful for generating helpful error messages, with context around the
      * token so it can be located easier.
      *
-     * <br>{@link #next()} should not be called after calling this method, as
-     * reading the context may result in an inconsistent state.
+     * <br>Building the context doesn't change the state of the lexer.
      *
      * @param token Token to highlight.
      * @param around How many characters to include before and after the token, at most.
@@ -133,8 +256,7 @@ public abstract class Lexer implements CharacterStream {
      * This method is useful for generating helpful error messages, with context
      * around the token so it can be located easier.
      *
-     * <br>{@link #next()} should not be called after calling this method, as
-     * reading the context may result in an inconsistent state.
+     * <br>Building the context doesn't change the state of the lexer.
      *
      * @param token Token for the context.
      *
@@ -151,8 +273,7 @@ public abstract class Lexer implements CharacterStream {
      * This method is useful for generating helpful error messages, with context
      * around the token so it can be located easier.
      *
-     * <br>{@link #next()} should not be called after calling this method, as
-     * reading the context may result in an inconsistent state.
+     * <br>Building the context doesn't change the state of the lexer.
      *
      * @param token Token for the context.
      * @param around How many characters to include before and after the token, at most.
@@ -193,6 +314,31 @@ public abstract class Lexer implements CharacterStream {
         return realStream.context(pos, length, around);
     }
     
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public SourceSnapshot snapshot() {
+        return realStream.snapshot();
+    }
+    
+    @Override
+    @CheckReturnValue
+    public int offset() {
+        return realStream.offset();
+    }
+    
+    /**
+     * Allows the underlying stream to drop input before the provided position, keeping
+     * the input of the {@link #push(Token) pushed} token, if any.
+     *
+     * @param pos Position before which input isn't needed anymore.
+     */
+    @Override
+    public void discardBefore(@Nonnull Position pos) {
+        Token next = nextToken;
+        realStream.discardBefore(next != null && next.position().line() < pos.line() ? next.position() : pos);
+    }
+    
     @Override
     @CheckReturnValue
     @Nonnull
@@ -216,6 +362,40 @@ public abstract class Lexer implements CharacterStream {
         return realStream.match(ch, ignoreWhitespace);
     }
     
+    /**
+     * Returns a checkpoint of the current state, including the underlying stream and
+     * the {@link #push(Token) pushed} token, if any. Lexers that keep additional state
+     * should override this method and {@link #reset(Mark)}.
+     *
+     * @return A checkpoint of the current state.
+     */
+    @Override
+    @CheckReturnValue
+    @Nonnull
+    public Mark mark() {
+        return new LexerMark(this, realStream.mark(), nextToken);
+    }
+    
+    /**
+     * Restores a checkpoint created by {@link #mark()}, including the underlying
+     * stream and the {@link #push(Token) pushed} token, if any.
+     *
+     * @param mark Checkpoint to restore.
+     */
+    @Override
+    public void reset(@Nonnull Mark mark) {
+        if(!(mark instanceof LexerMark) || ((LexerMark)mark).owner != this) {
+            throw new IllegalArgumentException("Mark was not created by this lexer");
+        }
+        LexerMark m = (LexerMark)mark;
+        int from = budget == null ? -1 : realStream.offset();
+        realStream.reset(m.stream);
+        nextToken = m.nextToken;
+        if(from != -1) {
+            budget.rewind(from - realStream.offset());
+        }
+    }
+    
     @Override
     public void backTo(@Nonnull Position pos) {
         realStream.backTo(pos);
@@ -242,4 +422,40 @@ public abstract class Lexer implements CharacterStream {
     public int read(boolean ignoreWhitespace) {
         return realStream.read(ignoreWhitespace);
     }
+    
+    @Nonnegative
+    @Override
+    public int scanWhile(@Nonnull CharClass chars) {
+        return realStream.scanWhile(chars);
+    }
+    
+    @Nonnegative
+    @Override
+    public int skipUntil(char delimiter) {
+        return realStream.skipUntil(delimiter);
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public CharSequence readRun(@Nonnull CharClass chars) {
+        return realStream.readRun(chars);
+    }
+    
+    private Token lex() {
+        if(budget != null) budget.token();
+        return profiler == null ? parse() : profiler.lex(this);
+    }
+    
+    private static final class LexerMark implements Mark {
+        private final Lexer owner;
+        private final Mark stream;
+        private final Token nextToken;
+    
+        LexerMark(Lexer owner, Mark stream, Token nextToken) {
+            this.owner = owner;
+            this.stream = stream;
+            this.nextToken = nextToken;
+        }
+    }
 }
@@ -0,0 +1,9 @@
+package com.github.natanbc.pratt;
+
+/**
+ * Opaque checkpoint of the state of a {@link CharacterStream} or {@link Lexer},
+ * created by {@link CharacterStream#mark()} and restored by {@link CharacterStream#reset(Mark)}.
+ *
+ * <br>Marks can only be restored on the object that created them.
+ */
+public interface Mark {}
@@ -0,0 +1,188 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Character stream that only tracks an offset in the source, without line and
+ * column bookkeeping. Useful when only the success or failure of a parse matters,
+ * such as bulk validation, where error messages don't need to point to the source.
+ *
+ * <br>Every {@link #pos() position} is in line 1, with the column being the number of
+ * characters read so far, including line breaks. Contexts are always empty, and
+ * {@link #prettyContext(Position, int, int) pretty contexts} only contain the offset
+ * of the character at the position, which for tokens is their first character.
+ */
+public class OffsetCharacterStream implements CharacterStream {
+    private CharSequence source;
+    private int length;
+    private int offset;
+    private int lastOffset = -1;
+    
+    public OffsetCharacterStream(@Nonnull CharSequence source) {
+        this.source = source;
+        this.length = source.length();
+    }
+    
+    /**
+     * Rebinds this stream to a new source, returning to its start.
+     *
+     * @param source Source to read.
+     */
+    public void reset(@Nonnull CharSequence source) {
+        this.source = source;
+        this.length = source.length();
+        this.offset = 0;
+        this.lastOffset = -1;
+    }
+    
+    /**
+     * @return Number of characters read so far.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    @Override
+    public int offset() {
+        return offset;
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public String prettyContext(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around) {
+        //token positions are taken after reading their first character
+        return "at offset " + Math.max(0, pos.column() - 1);
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public ErrorContext context(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around) {
+        return new ErrorContext(0, 0, "");
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public Position pos() {
+        return new Position(1, offset);
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public Mark mark() {
+        return new OffsetMark(this, offset);
+    }
+    
+    @Override
+    public void reset(@Nonnull Mark mark) {
+        if(!(mark instanceof OffsetMark) || ((OffsetMark)mark).owner != this) {
+            throw new IllegalArgumentException("Mark was not created by this stream");
+        }
+        offset = ((OffsetMark)mark).offset;
+        lastOffset = -1;
+    }
+    
+    @Override
+    public void backTo(int line, int column) {
+        if(line > 1 || column > offset) {
+            throw new IllegalArgumentException("Cannot go back to a position ahead of the current!");
+        }
+        if(line < 1 || column < 0) {
+            throw new IllegalArgumentException("Position (" + line + ", " + column + ") is not in the source!");
+        }
+        offset = column;
+    }
+    
+    @Override
+    public void back() {
+        if(lastOffset == -1) {
+            throw new IllegalStateException("Cannot go back more than one call to read()!");
+        }
+        if(lastOffset > offset) {
+            throw new IllegalArgumentException("Cannot go back to a position ahead of the current!");
+        }
+        offset = lastOffset;
+        lastOffset = -1;
+    }
+    
+    /**
+     * Only supports pushing back the last character read, as the source isn't copied.
+     *
+     * @param ch Character to insert.
+     *
+     * @deprecated Use {@link #back()} or {@link #backTo(Position)} instead.
+     */
+    @Deprecated
+    @Override
+    public void unread(@Nonnegative int ch) {
+        if(offset == 0) {
+            throw new IllegalStateException("Cannot unread before the start of the stream!");
+        }
+        if(source.charAt(offset - 1) != ch) {
+            throw new UnsupportedOperationException("Cannot unread a character different from the one read");
+        }
+        offset--;
+    }
+    
+    @CheckReturnValue
+    @Override
+    public int read(boolean ignoreWhitespace) {
+        lastOffset = offset;
+        while(offset < length) {
+            char ch = source.charAt(offset++);
+            if(ignoreWhitespace && CharClass.WHITESPACE.matches(ch)) {
+                continue;
+            }
+            return ch;
+        }
+        return -1;
+    }
+    
+    @Nonnegative
+    @Override
+    public int scanWhile(@Nonnull CharClass chars) {
+        int start = offset;
+        while(offset < length && chars.matches(source.charAt(offset))) {
+            offset++;
+        }
+        lastOffset = -1;
+        return offset - start;
+    }
+    
+    @Nonnegative
+    @Override
+    public int skipUntil(char delimiter) {
+        int start = offset;
+        while(offset < length && source.charAt(offset) != delimiter) {
+            offset++;
+        }
+        lastOffset = -1;
+        return offset - start;
+    }
+    
+    /**
+     * Consumes characters while they belong to a class and returns them as a
+     * {@link CharSequence#subSequence(int, int) subsequence} of the source.
+     */
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public CharSequence readRun(@Nonnull CharClass chars) {
+        int start = offset;
+        scanWhile(chars);
+        return source.subSequence(start, offset);
+    }
+    
+    private static final class OffsetMark implements Mark {
+        private final OffsetCharacterStream owner;
+        private final int offset;
+    
+        OffsetMark(OffsetCharacterStream owner, int offset) {
+            this.owner = owner;
+            this.offset = offset;
+        }
+    }
+}
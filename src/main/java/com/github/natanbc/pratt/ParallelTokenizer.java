@@ -0,0 +1,267 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Lexes a large input in parallel, for grammars where lexing can restart at line starts.
+ * The input is split at line starts into chunks, which are lexed on a fork-join pool by
+ * independent lexers, and the tokens are stitched into a single {@link TokenBuffer}
+ * with the same positions a single lexer would report. The buffer can then be parsed
+ * through its {@link TokenBuffer#lexer() cursor}.
+ *
+ * <br>Splitting is speculative. A {@link SplitPolicy} decides where chunks may start, and
+ * validates the tokens on each side of a seam. When a seam is rejected, or a chunk fails
+ * to lex, for example because it starts inside a multi-line comment, the chunks on both
+ * sides of the seam are merged and lexed again. If the merged chunk still fails to lex,
+ * or more than {@value #MAX_MERGES} seams need merging, splitting is abandoned and the
+ * whole input is lexed by a single lexer, so errors are reported exactly as without
+ * splitting and a bad policy costs at most a bounded amount of extra work.
+ *
+ * <pre>{@code
+ * TokenBuffer tokens = new ParallelTokenizer(MathLexer::new, MathTokenKind.values())
+ *         .chunkSize(1 << 16)
+ *         .tokenize(input);
+ * }</pre>
+ */
+public class ParallelTokenizer {
+    /** Maximum number of seams merged before the input is lexed sequentially instead. */
+    public static final int MAX_MERGES = 8;
+    
+    private final Function<? super Reader, ? extends Lexer> lexers;
+    private final TokenKindTable kinds;
+    private int chunkSize = 1 << 16;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private SplitPolicy policy = SplitPolicy.ANY_LINE;
+    
+    /**
+     * @param lexers Creates a new lexer for a reader. Called once per chunk, from the pool's threads.
+     * @param kinds Every kind the lexers can return.
+     */
+    public ParallelTokenizer(@Nonnull Function<? super Reader, ? extends Lexer> lexers, @Nonnull TokenKind... kinds) {
+        this.lexers = lexers;
+        this.kinds = new TokenKindTable(kinds);
+    }
+    
+    /**
+     * @param chunkSize Minimum number of characters in each chunk. Inputs smaller than
+     *                  two chunks, or tokenized with a pool with a single thread, are
+     *                  lexed on the calling thread.
+     *
+     * @return This tokenizer.
+     */
+    @Nonnull
+    public ParallelTokenizer chunkSize(@Nonnegative int chunkSize) {
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+    
+    /**
+     * @param pool Pool used to lex the chunks.
+     *
+     * @return This tokenizer.
+     */
+    @Nonnull
+    public ParallelTokenizer pool(@Nonnull ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+    
+    /**
+     * @param policy Policy deciding where chunks may start.
+     *
+     * @return This tokenizer.
+     */
+    @Nonnull
+    public ParallelTokenizer splitPolicy(@Nonnull SplitPolicy policy) {
+        this.policy = policy;
+        return this;
+    }
+    
+    /**
+     * Lexes an input, up to and including the EOF token.
+     *
+     * @param input Input to lex.
+     *
+     * @return A buffer with every token of the input.
+     *
+     * @throws IllegalArgumentException If the lexer rejects the input.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public TokenBuffer tokenize(@Nonnull String input) {
+        //with a single worker, splitting only adds copying
+        if(pool.getParallelism() == 1) {
+            return sequential(input);
+        }
+        List<Chunk> chunks = split(input);
+        if(chunks.size() == 1) {
+            return sequential(input);
+        }
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(chunks.size());
+        for(Chunk c : chunks) {
+            tasks.add(pool.submit(() -> lex(input, c)));
+        }
+        TokenBuffer result = new TokenBuffer(kinds);
+        Chunk current = tasks.get(0).join();
+        int merges = 0;
+        for(int i = 1; i < tasks.size(); i++) {
+            Chunk next = tasks.get(i).join();
+            if(current.failed || next.failed || !policy.validSeam(current.last(), next.first())) {
+                //speculation failed, lex both chunks as one, which may in turn be merged with the next
+                if(++merges > MAX_MERGES) {
+                    //the policy splits badly for this input, so merging further would relex it over and over
+                    return sequential(input);
+                }
+                current = lex(input, new Chunk(current.start, next.end, current.line));
+                if(current.failed) {
+                    //merging didn't fix the seam, so the error is either real or spans more chunks
+                    return sequential(input);
+                }
+                continue;
+            }
+            result.append(current.tokens, current.tokens.size() - 1, current.line - 1);
+            current = next;
+        }
+        if(current.failed) {
+            //lex everything again, so the error has the same message and context as a sequential lex
+            return sequential(input);
+        }
+        result.append(current.tokens, current.tokens.size(), current.line - 1);
+        return result;
+    }
+    
+    private TokenBuffer sequential(String input) {
+        TokenBuffer buffer = new TokenBuffer(kinds);
+        lexInto(lexers.apply(new StringReader(input)), buffer);
+        return buffer;
+    }
+    
+    private Chunk lex(String input, Chunk chunk) {
+        Chunk result = new Chunk(chunk.start, chunk.end, chunk.line);
+        result.tokens = new TokenBuffer(kinds);
+        try {
+            lexInto(lexers.apply(new StringReader(input.substring(chunk.start, chunk.end))), result.tokens);
+        } catch(IllegalArgumentException e) {
+            result.failed = true;
+        }
+        return result;
+    }
+    
+    private static void lexInto(Lexer lexer, TokenBuffer buffer) {
+        TokenKind eof = lexer.eofKind();
+        Token t;
+        do {
+            t = lexer.next();
+            buffer.add(t);
+        } while(!t.kind().equals(eof));
+    }
+    
+    private List<Chunk> split(String input) {
+        List<Chunk> chunks = new ArrayList<>();
+        int length = input.length();
+        int start = 0;
+        int line = 1;
+        while(true) {
+            int newLines = 0;
+            int split = -1;
+            if(length - start >= 2 * chunkSize) {
+                //leave at least a full chunk after this one
+                for(int i = start; i < length - chunkSize; i++) {
+                    if(input.charAt(i) == '\n') {
+                        newLines++;
+                        if(i + 1 - start >= chunkSize && policy.canSplit(input, i + 1)) {
+                            split = i + 1;
+                            break;
+                        }
+                    }
+                }
+            }
+            if(split == -1) {
+                chunks.add(new Chunk(start, length, line));
+                return chunks;
+            }
+            chunks.add(new Chunk(start, split, line));
+            start = split;
+            line += newLines;
+        }
+    }
+    
+    /**
+     * Decides where a {@link ParallelTokenizer} may split its input, and validates the
+     * resulting seams. Grammars with tokens spanning lines, such as strings or comments,
+     * should reject splits inside them when that's cheap to detect, and rely on
+     * {@link #validSeam(Token, Token)} or lexing errors otherwise.
+     */
+    public interface SplitPolicy {
+        /** Splits at any line start, accepting every seam. */
+        SplitPolicy ANY_LINE = new SplitPolicy() {};
+    
+        /**
+         * Returns whether or not a chunk may start at a line start.
+         *
+         * @param input Whole input.
+         * @param lineStart Offset of the first character of the line.
+         *
+         * @return True if lexing can restart at this line.
+         */
+        @CheckReturnValue
+        default boolean canSplit(@Nonnull CharSequence input, @Nonnegative int lineStart) {
+            return true;
+        }
+    
+        /**
+         * Validates the tokens on both sides of a seam. Rejected seams are lexed again without splitting.
+         *
+         * @param last Last token before the seam, or null if the chunk before it has no tokens.
+         * @param first First token after the seam, which is the EOF token if the chunk has no other tokens.
+         *
+         * @return True if the chunks can be joined as they are.
+         */
+        @CheckReturnValue
+        default boolean validSeam(Token last, @Nonnull Token first) {
+            return true;
+        }
+    }
+    
+    private static final class Chunk {
+        private final int start;
+        private final int end;
+        //line of the first character, 1 based
+        private final int line;
+        private TokenBuffer tokens;
+        private boolean failed;
+    
+        Chunk(int start, int end, int line) {
+            this.start = start;
+            this.end = end;
+            this.line = line;
+        }
+    
+        Token last() {
+            //the last token is EOF, which isn't kept
+            int i = tokens.size() - 2;
+            return i < 0 ? null : moved(i);
+        }
+    
+        Token first() {
+            return moved(0);
+        }
+    
+        private Token moved(int i) {
+            return new Token(tokens.kind(i), new Position(tokens.line(i) + line - 1, tokens.column(i)),
+                    new String(tokens.text(), tokens.start(i), tokens.length(i)));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the work done by a single parse, so untrusted input can't keep a thread busy
+ * indefinitely. Attached to a lexer with {@link Lexer#budget(ParseBudget)}, and checked
+ * by the lexer, the streams and the parser as they run, throwing a {@link BudgetExceededException}
+ * once any limit is exceeded.
+ *
+ * <br>Checks are cheap: counters are compared on every token, characters are checked
+ * whenever a stream loads more input, and the clock is only read every
+ * {@value #CLOCK_INTERVAL} tokens or loads.
+ *
+ * <br>Limits are configured once, while the counters are restarted with {@link #start()},
+ * which happens whenever the budget is attached or the lexer is {@link Lexer#reset() reset}.
+ * A budget must only be used by one parse at a time, but {@link #cancel()} may be called
+ * from any thread. Cancellation is sticky: restarting the budget doesn't clear it, so a
+ * cancel racing with a reset is never lost, and the owner must call {@link #clearCancellation()}
+ * before parsing with the budget again.
+ */
+public class ParseBudget {
+    /** How many checks happen between each read of the clock. */
+    public static final int CLOCK_INTERVAL = 64;
+    
+    private long maxChars = Long.MAX_VALUE;
+    private long maxTokens = Long.MAX_VALUE;
+    private int maxDepth = Integer.MAX_VALUE;
+    private long maxRewind = Long.MAX_VALUE;
+    private long timeoutNanos = -1;
+    private volatile boolean cancelled;
+    private long tokens;
+    private int depth;
+    private long rewound;
+    private long deadline;
+    private int checks;
+    
+    /**
+     * @param maxChars Maximum number of characters read from the input. Streams don't
+     *                 load characters past the limit until they're needed, so reading
+     *                 ahead doesn't count against it.
+     *
+     * @return This budget.
+     */
+    @Nonnull
+    public ParseBudget maxChars(@Nonnegative long maxChars) {
+        this.maxChars = maxChars;
+        return this;
+    }
+    
+    /**
+     * @param maxTokens Maximum number of tokens lexed. Tokens lexed again after
+     *                  rewinding are counted again.
+     *
+     * @return This budget.
+     */
+    @Nonnull
+    public ParseBudget maxTokens(@Nonnegative long maxTokens) {
+        this.maxTokens = maxTokens;
+        return this;
+    }
+    
+    /**
+     * @param maxDepth Maximum nesting of {@link Parser#parseExpression(Object, int) parseExpression} calls.
+     *
+     * @return This budget.
+     */
+    @Nonnull
+    public ParseBudget maxDepth(@Nonnegative int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+    
+    /**
+     * @param maxRewind Maximum total distance moved backwards by {@link Lexer#reset(Mark) resets},
+     *                  in characters, or in tokens for {@link TokenBuffer.Cursor cursors}.
+     *
+     * @return This budget.
+     */
+    @Nonnull
+    public ParseBudget maxRewind(@Nonnegative long maxRewind) {
+        this.maxRewind = maxRewind;
+        return this;
+    }
+    
+    /**
+     * @param timeout Maximum time for the parse, counted from {@link #start()}.
+     * @param unit Unit of the timeout.
+     *
+     * @return This budget.
+     */
+    @Nonnull
+    public ParseBudget timeout(@Nonnegative long timeout, @Nonnull TimeUnit unit) {
+        this.timeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+    
+    /**
+     * Restarts the counters and the deadline. The cancellation flag is kept.
+     *
+     * @return This budget.
+     */
+    @Nonnull
+    public ParseBudget start() {
+        tokens = 0;
+        depth = 0;
+        rewound = 0;
+        checks = 0;
+        deadline = timeoutNanos < 0 ? 0 : System.nanoTime() + timeoutNanos;
+        return this;
+    }
+    
+    /**
+     * Requests the parse to stop. The next check throws a {@link BudgetExceededException}.
+     * Can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    /**
+     * Clears a previous {@link #cancel()}, so the budget can be used by another parse.
+     *
+     * @return This budget.
+     */
+    @Nonnull
+    public ParseBudget clearCancellation() {
+        cancelled = false;
+        return this;
+    }
+    
+    /**
+     * @return Whether or not {@link #cancel()} was called since the last {@link #clearCancellation()}.
+     */
+    @CheckReturnValue
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * @return Number of tokens lexed since the last {@link #start()}.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public long tokens() {
+        return tokens;
+    }
+    
+    /**
+     * @return Current expression nesting.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int depth() {
+        return depth;
+    }
+    
+    /**
+     * @return Total distance rewound since the last {@link #start()}.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public long rewound() {
+        return rewound;
+    }
+    
+    /**
+     * Returns how many more characters a stream may load without exceeding the
+     * character limit. Streams loading input in chunks cap their reads with it, and
+     * only go past the limit, by a single read, once they need more characters.
+     *
+     * @param loaded Total number of characters loaded so far.
+     *
+     * @return Number of characters that can still be loaded.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public long remainingChars(@Nonnegative long loaded) {
+        return Math.max(0, maxChars - loaded);
+    }
+    
+    /**
+     * Checks the character limit. Called by streams after loading more input.
+     *
+     * @param loaded Total number of characters loaded so far.
+     */
+    public void chars(long loaded) {
+        if(loaded > maxChars) {
+            throw new BudgetExceededException(Limit.CHARS, "Read more than " + maxChars + " characters");
+        }
+        check();
+    }
+    
+    /**
+     * Counts a token. Called by lexers before lexing each token.
+     */
+    public void token() {
+        if(++tokens > maxTokens) {
+            throw new BudgetExceededException(Limit.TOKENS, "Read more than " + maxTokens + " tokens");
+        }
+        check();
+    }
+    
+    /**
+     * Enters an expression. Called by parsers at the start of each expression.
+     */
+    public void enter() {
+        if(++depth > maxDepth) {
+            depth--;
+            throw new BudgetExceededException(Limit.DEPTH, "Expressions nested deeper than " + maxDepth);
+        }
+    }
+    
+    /**
+     * Exits an expression. Called by parsers at the end of each expression, even if it failed.
+     */
+    public void exit() {
+        depth--;
+    }
+    
+    /**
+     * Counts a move backwards. Called by lexers when resetting to a mark.
+     *
+     * @param distance Distance moved. Moves forward, with negative distances, are ignored.
+     */
+    public void rewind(long distance) {
+        if(distance > 0 && (rewound += distance) > maxRewind) {
+            throw new BudgetExceededException(Limit.REWIND, "Rewound more than " + maxRewind);
+        }
+    }
+    
+    /**
+     * Checks the cancellation flag and, every {@value #CLOCK_INTERVAL} calls, the deadline.
+     */
+    public void check() {
+        if(cancelled) {
+            throw new BudgetExceededException(Limit.CANCELLED, "Parse was cancelled");
+        }
+        if(timeoutNanos >= 0 && ++checks % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            throw new BudgetExceededException(Limit.DEADLINE, "Parse took longer than " +
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+        }
+    }
+    
+    /**
+     * Limits that can be exceeded.
+     */
+    public enum Limit {
+        CHARS, TOKENS, DEPTH, REWIND, DEADLINE, CANCELLED
+    }
+}
@@ -0,0 +1,313 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of parse results, so inputs parsed in a previous run can be loaded
+ * instead of parsed again. Results are converted to bytes by a {@link ResultCodec},
+ * and stored in an append-only file keyed by the SHA-256 hash of the input.
+ *
+ * <br>The file is memory mapped, and only the entry headers are read when opening
+ * it. The file also stores a grammar version, which should be changed whenever the
+ * grammar or the codec change: opening a file with a different version discards
+ * every entry in it.
+ *
+ * <br>Storing the result of an input again appends a new entry, leaving the old one in
+ * the file. When more than half of the file is taken by replaced entries, it's compacted
+ * when opened: the entries still in use are copied to a new file, which then atomically
+ * replaces the old one.
+ *
+ * <br>Invalid entries, either corrupted, truncated by a crash while writing, or rejected
+ * by the codec, are treated as missing, so {@link #parse(String, Function)} transparently
+ * falls back to parsing the input.
+ *
+ * <br>Caches are thread safe, but a file must only be opened by one cache at a time.
+ *
+ * @param <R> Type of the results.
+ */
+public class ParseCache<R> implements Closeable {
+    //"PRC" followed by the format version
+    private static final int MAGIC = 0x50524301;
+    private static final int HEADER_SIZE = 12;
+    private static final int KEY_SIZE = 32;
+    //payload length, key and crc of the payload
+    private static final int ENTRY_HEADER_SIZE = 4 + KEY_SIZE + 4;
+    
+    private final Path file;
+    private FileChannel channel;
+    private final ResultCodec<R> codec;
+    private final MessageDigest digest;
+    //wrapped keys, compared by content, to the offset of their entries
+    private final Map<ByteBuffer, Long> index = new HashMap<>();
+    private MappedByteBuffer mapped;
+    private long end;
+    
+    /**
+     * Opens a cache file, creating it if needed.
+     *
+     * @param file File storing the cache.
+     * @param grammarVersion Version of the grammar and codec. Entries written with another version are discarded.
+     * @param codec Codec used to convert results.
+     *
+     * @throws IOException If the file can't be opened.
+     */
+    public ParseCache(@Nonnull Path file, long grammarVersion, @Nonnull ResultCodec<R> codec) throws IOException {
+        this.file = file;
+        this.codec = codec;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-256 is required to be supported", e);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            load(grammarVersion);
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * @return Number of entries in the cache.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public synchronized int size() {
+        return index.size();
+    }
+    
+    /**
+     * Returns the cached result for an input, or parses it and stores the result.
+     * Failures to store the result are ignored, as the cache is only an optimization.
+     *
+     * @param input Input to parse.
+     * @param parser Function parsing the input, called if no valid result is cached.
+     *
+     * @return The result of parsing the input.
+     */
+    @Nonnull
+    public R parse(@Nonnull String input, @Nonnull Function<? super String, ? extends R> parser) {
+        R result = get(input);
+        if(result != null) {
+            return result;
+        }
+        result = parser.apply(input);
+        try {
+            put(input, result);
+        } catch(RuntimeException ignored) {
+            //the result is still valid even if it couldn't be stored, whether because of
+            //the file or because the codec can't encode it
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the cached result for an input.
+     *
+     * @param input Input wanted.
+     *
+     * @return The cached result, or null if there's no valid result for the input.
+     */
+    @Nullable
+    @CheckReturnValue
+    public synchronized R get(@Nonnull String input) {
+        ByteBuffer key = key(input);
+        Long offset = index.get(key);
+        if(offset == null) {
+            return null;
+        }
+        try {
+            ByteBuffer entry = mapped(offset);
+            int pos = (int)(long)offset;
+            int length = entry.getInt(pos);
+            int crc = entry.getInt(pos + 4 + KEY_SIZE);
+            byte[] payload = new byte[length];
+            ByteBuffer view = entry.duplicate();
+            view.position(pos + ENTRY_HEADER_SIZE);
+            view.get(payload);
+            CRC32 checksum = new CRC32();
+            checksum.update(payload, 0, length);
+            if((int)checksum.getValue() != crc) {
+                index.remove(key);
+                return null;
+            }
+            return codec.read(new DataInputStream(new ByteArrayInputStream(payload)));
+        } catch(IOException | RuntimeException e) {
+            //anything the codec can't read is treated as missing, and replaced when stored again
+            index.remove(key);
+            return null;
+        }
+    }
+    
+    /**
+     * Stores the result for an input, replacing any previous result.
+     *
+     * @param input Input parsed.
+     * @param result Result of parsing the input.
+     *
+     * @throws IllegalStateException If the result can't be encoded or written.
+     */
+    public synchronized void put(@Nonnull String input, @Nonnull R result) {
+        ByteBuffer key = key(input);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            codec.write(result, new DataOutputStream(bytes));
+            byte[] payload = bytes.toByteArray();
+            CRC32 checksum = new CRC32();
+            checksum.update(payload, 0, payload.length);
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + payload.length);
+            entry.putInt(payload.length).put(key.duplicate()).putInt((int)checksum.getValue()).put(payload);
+            entry.flip();
+            if(end + entry.limit() > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Cache file is full");
+            }
+            long offset = end;
+            write(entry, offset);
+            end += entry.limit();
+            index.put(key, offset);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        channel.close();
+    }
+    
+    private void load(long grammarVersion) throws IOException {
+        long size = channel.size();
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("Cache file larger than 2GB");
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if(size < HEADER_SIZE || channel.read(header, 0) < HEADER_SIZE ||
+                header.getInt(0) != MAGIC || header.getLong(4) != grammarVersion) {
+            //new file, another format or another grammar, none of the entries can be used
+            channel.truncate(0);
+            header.clear();
+            header.putInt(MAGIC).putLong(grammarVersion).flip();
+            write(header, 0);
+            end = HEADER_SIZE;
+            return;
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int pos = HEADER_SIZE;
+        while(pos + ENTRY_HEADER_SIZE <= size) {
+            int length = mapped.getInt(pos);
+            if(length < 0 || (long)pos + ENTRY_HEADER_SIZE + length > size) {
+                break;
+            }
+            byte[] key = new byte[KEY_SIZE];
+            ByteBuffer view = mapped.duplicate();
+            view.position(pos + 4);
+            view.get(key);
+            //later entries replace earlier ones for the same input
+            index.put(ByteBuffer.wrap(key), (long)pos);
+            pos += ENTRY_HEADER_SIZE + length;
+        }
+        end = pos;
+        if(end < size) {
+            //an entry was only partially written, so it's dropped and new entries are written over it
+            mapped = null;
+            channel.truncate(end);
+        }
+        long live = 0;
+        for(long offset : index.values()) {
+            live += ENTRY_HEADER_SIZE + mapped(offset).getInt((int)offset);
+        }
+        if((end - HEADER_SIZE - live) * 2 > end - HEADER_SIZE) {
+            compact();
+        }
+    }
+    
+    private void compact() throws IOException {
+        List<Long> offsets = new ArrayList<>(index.values());
+        Collections.sort(offsets);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<ByteBuffer, Long> compacted = new HashMap<>();
+        long pos = HEADER_SIZE;
+        try(FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            transfer(0, HEADER_SIZE, out);
+            for(long offset : offsets) {
+                ByteBuffer entry = mapped(offset);
+                int length = ENTRY_HEADER_SIZE + entry.getInt((int)offset);
+                byte[] key = new byte[KEY_SIZE];
+                ByteBuffer view = entry.duplicate();
+                view.position((int)offset + 4);
+                view.get(key);
+                transfer(offset, length, out);
+                compacted.put(ByteBuffer.wrap(key), pos);
+                pos += length;
+            }
+            out.force(false);
+            //the old file stays open until replaced, so a failure here leaves the cache as it was
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(IOException e) {
+            Files.deleteIfExists(temp);
+            return;
+        }
+        FileChannel old = channel;
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        old.close();
+        mapped = null;
+        index.clear();
+        index.putAll(compacted);
+        end = pos;
+    }
+    
+    private void transfer(long position, long count, FileChannel out) throws IOException {
+        while(count > 0) {
+            long n = channel.transferTo(position, count, out);
+            position += n;
+            count -= n;
+        }
+    }
+    
+    private ByteBuffer mapped(long offset) throws IOException {
+        //entries written since the file was last mapped need a new mapping
+        if(mapped == null || offset + ENTRY_HEADER_SIZE > mapped.capacity() ||
+                offset + ENTRY_HEADER_SIZE + mapped.getInt((int)offset) > mapped.capacity()) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        }
+        return mapped;
+    }
+    
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+    
+    private ByteBuffer key(String input) {
+        return ByteBuffer.wrap(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+}
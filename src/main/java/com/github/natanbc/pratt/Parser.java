@@ -3,10 +3,18 @@ package com.github.natanbc.pratt;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Reader;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Transforms a stream of tokens into an usable format, usually
@@ -23,11 +31,23 @@ public class Parser<C, R> {
     protected final Map<TokenKind, PrefixParselet<C, R>> prefixParselets = new HashMap<>();
     protected final Map<TokenKind, InfixParselet<C, R>> infixParselets = new HashMap<>();
     protected final Lexer lexer;
+    protected Map<MemoKey, MemoEntry<R>> memo;
+    protected Profiler profiler;
     
     public Parser(@Nonnull Lexer lexer) {
         this.lexer = lexer;
     }
     
+    /**
+     * Creates a parser reading from a {@link TokenBuffer#lexer() cursor} over
+     * the provided buffer, so lookahead and backtracking are plain index operations.
+     *
+     * @param buffer Buffer containing the tokens to parse.
+     */
+    public Parser(@Nonnull TokenBuffer buffer) {
+        this(buffer.lexer());
+    }
+    
     /**
      * Registers a prefix parselet.
      *
@@ -35,7 +55,7 @@ public class Parser<C, R> {
      * @param parselet Parselet to register.
      */
     public void register(@Nonnull TokenKind kind, @Nonnull PrefixParselet<C, R> parselet) {
-        prefixParselets.put(kind, parselet);
+        prefixParselets.put(kind, profiler == null ? parselet : profiler.wrap(kind, parselet));
     }
     
     /**
@@ -45,7 +65,7 @@ public class Parser<C, R> {
      * @param parselet Parselet to register.
      */
     public void register(@Nonnull TokenKind kind, @Nonnull InfixParselet<C, R> parselet) {
-        infixParselets.put(kind, parselet);
+        infixParselets.put(kind, profiler == null ? parselet : profiler.wrap(kind, parselet));
     }
     
     /**
@@ -57,6 +77,151 @@ public class Parser<C, R> {
         return lexer;
     }
     
+    /**
+     * Resets the lexer and discards memoized attempts, keeping the registered parselets.
+     *
+     * @see Lexer#reset()
+     */
+    public void reset() {
+        lexer.reset();
+        clearMemo();
+    }
+    
+    /**
+     * Enables or disables profiling. When enabled, every registered parselet, including
+     * ones registered later, is wrapped to record its self time, and the lexer records
+     * the time spent lexing each token.
+     *
+     * @param profiler Profiler to record to, or null to disable profiling.
+     *
+     * @see Profiler
+     */
+    public void profile(@Nullable Profiler profiler) {
+        this.profiler = profiler;
+        lexer.profile(profiler);
+        for(Map.Entry<TokenKind, PrefixParselet<C, R>> e : prefixParselets.entrySet()) {
+            PrefixParselet<C, R> parselet = Profiler.unwrap(e.getValue());
+            e.setValue(profiler == null ? parselet : profiler.wrap(e.getKey(), parselet));
+        }
+        for(Map.Entry<TokenKind, InfixParselet<C, R>> e : infixParselets.entrySet()) {
+            InfixParselet<C, R> parselet = Profiler.unwrap(e.getValue());
+            e.setValue(profiler == null ? parselet : profiler.wrap(e.getKey(), parselet));
+        }
+    }
+    
+    /**
+     * Attaches a budget to this parser's lexer.
+     *
+     * @param budget Budget to use, or null to remove the current one.
+     *
+     * @see Lexer#budget(ParseBudget)
+     */
+    public void budget(@Nullable ParseBudget budget) {
+        lexer.budget(budget);
+    }
+    
+    /**
+     * Rebinds this parser to a new reader, keeping the registered parselets and
+     * reusing the lexer's buffers.
+     *
+     * @param reader Reader to use.
+     *
+     * @throws UnsupportedOperationException If the lexer's stream can't read from a reader.
+     *
+     * @see Lexer#reset(Reader)
+     */
+    public void reset(@Nonnull Reader reader) {
+        lexer.reset(reader);
+        clearMemo();
+    }
+    
+    /**
+     * Rebinds this parser to a new stream, keeping the registered parselets.
+     *
+     * @param stream Stream to use.
+     *
+     * @see Lexer#reset(CharacterStream)
+     */
+    public void reset(@Nonnull CharacterStream stream) {
+        lexer.reset(stream);
+        clearMemo();
+    }
+    
+    /**
+     * Enables or disables memoization of {@link #attempt(Object, PrefixParselet) attempts}.
+     * When enabled, the outcome of running a parselet at a given token position is stored,
+     * and repeating the attempt restores it instead of parsing again, which keeps grammars
+     * that try several alternatives linear time. Disabling discards all stored outcomes.
+     *
+     * <br>Memoization assumes that running the same parselet on the same position
+     * always has the same outcome, which isn't true if parselets depend on the context
+     * object. It also requires a lexer whose {@link Lexer#reset(Mark) reset} can move
+     * forward, which all lexers using the built in streams support.
+     *
+     * <br>Stored outcomes are kept until {@link #clearMemo()} or {@link #reset()}, so
+     * the memo grows with the input. When parsing long inputs, clear it at points the
+     * parser never backtracks past, such as between statements. The
+     * {@link #iterator(Object, TokenKind) expression iterators} do this after every expression.
+     *
+     * @param enabled Whether or not attempts should be memoized.
+     */
+    public void memoize(boolean enabled) {
+        memo = enabled ? new HashMap<>() : null;
+    }
+    
+    /**
+     * Discards all memoized attempts. Must be called if the input changes
+     * while memoization is enabled.
+     */
+    public void clearMemo() {
+        if(memo != null) {
+            memo.clear();
+        }
+    }
+    
+    /**
+     * Runs a parselet speculatively on the next token. If the parselet throws an
+     * {@link IllegalArgumentException}, which is how parse errors are reported, the
+     * lexer is {@link Lexer#reset(Mark) reset} to its state before the call and an
+     * empty optional is returned. Other exceptions are propagated without resetting.
+     *
+     * @param context State used by the parselet. May be null.
+     * @param parselet Parselet to run.
+     *
+     * @return The result of the parselet, or {@link Optional#empty()} if it failed.
+     *
+     * @see #memoize(boolean)
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Optional<R> attempt(C context, @Nonnull PrefixParselet<C, R> parselet) {
+        Mark start = lexer.mark();
+        Token t = lexer.next();
+        MemoKey key = null;
+        if(memo != null) {
+            key = new MemoKey(parselet, t.position());
+            MemoEntry<R> entry = memo.get(key);
+            if(entry != null) {
+                lexer.reset(entry.result == null ? start : entry.end);
+                return Optional.ofNullable(entry.result);
+            }
+        }
+        R result;
+        try {
+            result = parselet.parse(context, this, t);
+        } catch(IllegalArgumentException e) {
+            lexer.reset(start);
+            if(key != null) {
+                memo.put(key, new MemoEntry<>(null, null));
+            }
+            return Optional.empty();
+        }
+        if(key != null) {
+            memo.put(key, new MemoEntry<>(result, lexer.mark()));
+        }
+        return Optional.of(result);
+    }
+    
     /**
      * Parses an expression with the default precedence of zero.
      *
@@ -83,16 +248,38 @@ public class Parser<C, R> {
     @Nonnull
     @CheckReturnValue
     public R parseExpression(C context, @Nonnegative int precedence) {
+        ParseBudget budget = lexer.budget;
+        if(budget == null) {
+            return parseExpressionBody(context, precedence);
+        }
+        budget.enter();
+        try {
+            return parseExpressionBody(context, precedence);
+        } finally {
+            budget.exit();
+        }
+    }
+    
+    /**
+     * Parses an expression, without checking the {@link Lexer#budget() budget}'s depth.
+     * Called by {@link #parseExpression(Object, int)}, subclasses that change how expressions
+     * are parsed should override this method instead.
+     *
+     * @param context State used by the parselets. May be null.
+     * @param precedence Precedence for the current operator.
+     *
+     * @return The result of the parsing.
+     */
+    @Nonnull
+    @CheckReturnValue
+    protected R parseExpressionBody(C context, @Nonnegative int precedence) {
         Token t = lexer.next();
         if(t.kind().equals(lexer.eofKind())) {
-            throw new IllegalArgumentException("Expression expected, got EOF\n" + lexer.prettyContextFor(t));
+            throw unexpectedToken(t);
         }
         PrefixParselet<C, R> prefix = prefixParselets.get(t.kind());
         if(prefix == null) {
-            Position pos = t.position();
-            throw new IllegalArgumentException("Unexpected token of type " +
-                    t.kind() + " (" + t.value() + ") at line " + pos.line() + ", column " +
-                    pos.column() + "\n" + lexer.prettyContextFor(t));
+            throw unexpectedToken(t);
         }
         R left = prefix.parse(context, this, t);
     
@@ -105,11 +292,95 @@ public class Parser<C, R> {
         return left;
     }
     
+    /**
+     * Returns an iterator over the expressions remaining in the input, parsing them
+     * lazily, one per call to {@link Iterator#next() next()}. Expressions are parsed with
+     * the default precedence of zero, and iteration ends when the lexer returns EOF.
+     *
+     * <br>When a separator is provided, every expression must be followed by a separator
+     * or EOF, and repeated separators are skipped, so empty expressions are allowed. Without
+     * one, expressions follow each other directly, each ending at the first token that
+     * can't continue it.
+     *
+     * <br>Parse errors are thrown by the call that reaches them. The iterator uses this
+     * parser, so the parser must not be used for anything else while iterating.
+     *
+     * <br>After each expression, the lexer is allowed to {@link CharacterStream#discardBefore(Position) discard}
+     * the input before it, so long inputs are parsed in bounded memory, but positions
+     * from earlier expressions can't be returned to afterwards.
+     *
+     * @param context State used by the parselets. May be null.
+     * @param separator Kind of the tokens between expressions, or null if there are none.
+     *
+     * @return An iterator over the remaining expressions.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Iterator<R> iterator(C context, @Nullable TokenKind separator) {
+        return Spliterators.iterator(spliterator(context, separator));
+    }
+    
+    /**
+     * Returns a spliterator over the expressions remaining in the input, parsing them
+     * lazily. Splitting parses a batch of expressions ahead on the calling thread, so
+     * the work done with them can happen in parallel. Batches grow with each split, up
+     * to 1024 expressions, so the number of results held at once stays bounded.
+     *
+     * @param context State used by the parselets. May be null.
+     * @param separator Kind of the tokens between expressions, or null if there are none.
+     *
+     * @return A spliterator over the remaining expressions.
+     *
+     * @see #iterator(Object, TokenKind)
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Spliterator<R> spliterator(C context, @Nullable TokenKind separator) {
+        return new ExpressionSpliterator(context, separator);
+    }
+    
+    /**
+     * Returns a stream of the expressions remaining in the input, parsing them lazily.
+     * The stream may be made {@link Stream#parallel() parallel}, in which case parsing
+     * is still sequential but the following operations are not.
+     *
+     * @param context State used by the parselets. May be null.
+     * @param separator Kind of the tokens between expressions, or null if there are none.
+     *
+     * @return A stream of the remaining expressions.
+     *
+     * @see #spliterator(Object, TokenKind)
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Stream<R> stream(C context, @Nullable TokenKind separator) {
+        return StreamSupport.stream(spliterator(context, separator), false);
+    }
+    
+    /**
+     * Creates the exception thrown when an expression can't start with the provided
+     * token, either because it's EOF or because no prefix parselet handles it.
+     *
+     * @param t Token found.
+     *
+     * @return The exception to throw.
+     */
+    @Nonnull
+    @CheckReturnValue
+    protected IllegalArgumentException unexpectedToken(@Nonnull Token t) {
+        if(t.kind().equals(lexer.eofKind())) {
+            return new IllegalArgumentException("Expression expected, got EOF\n" + lexer.prettyContextFor(t));
+        }
+        Position pos = t.position();
+        return new IllegalArgumentException("Unexpected token of type " +
+                t.kind() + " (" + t.value() + ") at line " + pos.line() + ", column " +
+                pos.column() + "\n" + lexer.prettyContextFor(t));
+    }
+    
     @Nonnegative
     @CheckReturnValue
     private int currentPrecedence() {
-        Token t = peek();
-        InfixParselet<C, R> parser = infixParselets.get(t.kind());
+        InfixParselet<C, R> parser = infixParselets.get(lexer.peekKind());
         if(parser != null) return parser.precedence();
         return 0;
     }
@@ -124,7 +395,7 @@ public class Parser<C, R> {
      */
     @CheckReturnValue
     public boolean matches(@Nonnull TokenKind kind) {
-        boolean match = peek().kind().equals(kind);
+        boolean match = lexer.peekKind().equals(kind);
         if(match) {
             lexer.skip();
         }
@@ -214,4 +485,101 @@ public class Parser<C, R> {
         }
         return actual;
     }
+    
+    private final class ExpressionSpliterator extends Spliterators.AbstractSpliterator<R> {
+        private static final int MAX_BATCH = 1024;
+    
+        private final C context;
+        private final TokenKind separator;
+        private boolean done;
+        private int batch = 16;
+    
+        ExpressionSpliterator(C context, TokenKind separator) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.context = context;
+            this.separator = separator;
+        }
+    
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            R result = parseNext();
+            if(result == null) {
+                return false;
+            }
+            action.accept(result);
+            return true;
+        }
+    
+        @Override
+        public Spliterator<R> trySplit() {
+            //unlike the default implementation, batches are capped so results aren't accumulated without bound
+            Object[] results = new Object[batch];
+            int n = 0;
+            R result;
+            while(n < results.length && (result = parseNext()) != null) {
+                results[n++] = result;
+            }
+            if(n == 0) {
+                return null;
+            }
+            batch = Math.min(batch * 2, MAX_BATCH);
+            return Spliterators.spliterator(results, 0, n, Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+    
+        private R parseNext() {
+            if(done) {
+                return null;
+            }
+            //empty expressions between separators are skipped
+            while(separator != null && lexer.peekKind().equals(separator)) {
+                lexer.skip();
+            }
+            if(lexer.peekKind().equals(lexer.eofKind())) {
+                done = true;
+                return null;
+            }
+            R result = parseExpression(context);
+            if(separator != null && !lexer.peekKind().equals(lexer.eofKind())) {
+                expect(separator);
+            }
+            //no attempt can backtrack into a finished expression, so neither its memo entries nor its input are needed
+            clearMemo();
+            lexer.discardBefore(lexer.pos());
+            return result;
+        }
+    }
+    
+    protected static final class MemoKey {
+        private final Object parselet;
+        private final Position position;
+    
+        MemoKey(Object parselet, Position position) {
+            this.parselet = parselet;
+            this.position = position;
+        }
+    
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(parselet) * 31 + position.hashCode();
+        }
+    
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof MemoKey)) {
+                return false;
+            }
+            MemoKey k = (MemoKey) obj;
+            return k.parselet == parselet && k.position.equals(position);
+        }
+    }
+    
+    protected static final class MemoEntry<R> {
+        private final R result;
+        private final Mark end;
+    
+        MemoEntry(R result, Mark end) {
+            this.result = result;
+            this.end = end;
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, thread safe pool of parsers, so parselet maps and stream buffers are
+ * reused across parses instead of being created for each one. Parsers are rebound
+ * to new input with {@link Parser#reset(java.io.Reader) reset} after being acquired.
+ *
+ * <br>If the pool is empty, {@link #acquire()} creates a new parser instead of waiting,
+ * and parsers released while the pool is full are discarded.
+ *
+ * @param <P> Type of the parsers.
+ */
+public class ParserPool<P extends Parser<?, ?>> {
+    private final ArrayBlockingQueue<P> idle;
+    private final Supplier<P> factory;
+    
+    /**
+     * @param capacity Maximum number of idle parsers kept.
+     * @param factory Creates new parsers when the pool is empty.
+     */
+    public ParserPool(@Nonnegative int capacity, @Nonnull Supplier<P> factory) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.idle = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+    }
+    
+    /**
+     * Returns an idle parser, or creates a new one if none is available.
+     *
+     * @return A parser, which should be {@link #release(Parser) released} after use.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public P acquire() {
+        P parser = idle.poll();
+        return parser == null ? factory.get() : parser;
+    }
+    
+    /**
+     * Returns a parser to the pool. The parser is {@link Parser#reset() reset}, and
+     * must not be used by the caller afterwards.
+     *
+     * @param parser Parser to return.
+     */
+    public void release(@Nonnull P parser) {
+        parser.reset();
+        //noinspection ResultOfMethodCallIgnored
+        idle.offer(parser);
+    }
+    
+    /**
+     * Acquires a parser, applies a function to it and releases it, even if the function throws.
+     *
+     * @param action Function to apply. Must not keep a reference to the parser.
+     * @param <T> Type returned by the function.
+     *
+     * @return The value returned by the function.
+     */
+    public <T> T use(@Nonnull Function<? super P, T> action) {
+        P parser = acquire();
+        try {
+            return action.apply(parser);
+        } finally {
+            release(parser);
+        }
+    }
+    
+    /**
+     * @return Number of idle parsers in the pool.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int idle() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.natanbc.pratt;
+
+/**
+ * Features of the running JDK that change which code paths are fastest. This is the
+ * Java 8 version, newer runtimes load the versions under {@code META-INF/versions}
+ * of the multi-release jar instead.
+ *
+ * <br>Values are returned by methods instead of constants, which would be inlined by
+ * the compiler into the classes using them, ignoring the versioned classes.
+ */
+final class Platform {
+    private Platform() {}
+    
+    /**
+     * Whether or not decoding bytes with {@link String} and copying them with
+     * {@link String#getChars(int, int, char[], int)} is faster than decoding them
+     * one by one. Only true with the string decoding intrinsics of Java 21, earlier
+     * versions are faster for ASCII but much slower for other characters.
+     */
+    static boolean fastStringDecoding() {
+        return false;
+    }
+}
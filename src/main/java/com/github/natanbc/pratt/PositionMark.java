@@ -0,0 +1,15 @@
+package com.github.natanbc.pratt;
+
+/**
+ * Mark used by the default {@link CharacterStream#mark()} implementation,
+ * restored with {@link CharacterStream#backTo(Position)}.
+ */
+final class PositionMark implements Mark {
+    final CharacterStream owner;
+    final Position position;
+    
+    PositionMark(CharacterStream owner, Position position) {
+        this.owner = owner;
+        this.position = position;
+    }
+}
@@ -0,0 +1,217 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long lexing and each registered parselet take, per token kind, so slow
+ * parts of a grammar can be found. Enabled with {@link Parser#profile(Profiler)}, which
+ * wraps every registered parselet and times every call to {@link Lexer#parse()}.
+ *
+ * <br>Parselet times are self times: time spent lexing and in nested parselets is
+ * subtracted, so a parselet for parenthesis isn't blamed for the expression inside it.
+ * Parselets called directly instead of through the registered maps, such as by parsers
+ * generated from a {@link com.github.natanbc.pratt.annotation.Grammar grammar}, are not timed.
+ *
+ * <br>A profiler is not thread safe. Each thread should use its own, and {@link #merge(Profiler) merge}
+ * them to build a report.
+ */
+public class Profiler {
+    private final Map<String, LatencyHistogram> entries = new LinkedHashMap<>();
+    private final Map<TokenKind, LatencyHistogram> lexing = new HashMap<>();
+    //time spent in children of each active parselet
+    private long[] children = new long[16];
+    private int depth;
+    
+    /**
+     * Adds every value recorded by another profiler to this one.
+     *
+     * @param other Profiler to merge.
+     */
+    public void merge(@Nonnull Profiler other) {
+        for(Map.Entry<String, LatencyHistogram> e : other.entries.entrySet()) {
+            entries.computeIfAbsent(e.getKey(), __ -> new LatencyHistogram()).merge(e.getValue());
+        }
+    }
+    
+    /**
+     * @return Histograms recorded so far, by label, such as {@code lex NUMBER} or {@code infix PLUS}.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Map<String, LatencyHistogram> histograms() {
+        return entries;
+    }
+    
+    /**
+     * Discards every value recorded.
+     */
+    public void clear() {
+        //parselets keep references to their histograms, so they're cleared in place
+        for(LatencyHistogram h : entries.values()) {
+            h.clear();
+        }
+    }
+    
+    /**
+     * Returns a report of the most expensive entries, sorted by total self time.
+     *
+     * @param limit Maximum number of entries in the report.
+     *
+     * @return A table with one entry per line.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public String report(@Nonnegative int limit) {
+        List<Map.Entry<String, LatencyHistogram>> sorted = new ArrayList<>(entries.entrySet());
+        sorted.sort(Comparator.comparingLong((Map.Entry<String, LatencyHistogram> e) -> e.getValue().total()).reversed());
+        long total = 0;
+        for(Map.Entry<String, LatencyHistogram> e : sorted) {
+            total += e.getValue().total();
+        }
+        StringBuilder sb = new StringBuilder(String.format("%-24s %10s %10s %7s %10s %10s %10s %10s%n",
+                "entry", "count", "total ms", "share", "mean ns", "p50 ns", "p99 ns", "max ns"));
+        for(Map.Entry<String, LatencyHistogram> e : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            LatencyHistogram h = e.getValue();
+            sb.append(String.format("%-24s %10d %10.3f %6.1f%% %10.0f %10d %10d %10d%n",
+                    e.getKey(), h.count(), h.total() / 1e6, total == 0 ? 0 : h.total() * 100.0 / total,
+                    h.mean(), h.percentile(50), h.percentile(99), h.max()));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Returns a report of the 20 most expensive entries.
+     *
+     * @return A table with one entry per line.
+     *
+     * @see #report(int)
+     */
+    @Override
+    public String toString() {
+        return report(20);
+    }
+    
+    Token lex(Lexer lexer) {
+        long start = System.nanoTime();
+        Token t = lexer.parse();
+        long elapsed = System.nanoTime() - start;
+        LatencyHistogram h = lexing.get(t.kind());
+        if(h == null) {
+            lexing.put(t.kind(), h = histogram("lex " + t.kind()));
+        }
+        h.record(elapsed);
+        if(depth > 0) {
+            children[depth - 1] += elapsed;
+        }
+        return t;
+    }
+    
+    <C, R> PrefixParselet<C, R> wrap(TokenKind kind, PrefixParselet<C, R> parselet) {
+        if(parselet instanceof ProfiledPrefix) {
+            parselet = ((ProfiledPrefix<C, R>)parselet).delegate;
+        }
+        return new ProfiledPrefix<>(this, histogram("prefix " + kind), parselet);
+    }
+    
+    <C, R> InfixParselet<C, R> wrap(TokenKind kind, InfixParselet<C, R> parselet) {
+        if(parselet instanceof ProfiledInfix) {
+            parselet = ((ProfiledInfix<C, R>)parselet).delegate;
+        }
+        return new ProfiledInfix<>(this, histogram("infix " + kind), parselet);
+    }
+    
+    static <C, R> PrefixParselet<C, R> unwrap(PrefixParselet<C, R> parselet) {
+        return parselet instanceof ProfiledPrefix ? ((ProfiledPrefix<C, R>)parselet).delegate : parselet;
+    }
+    
+    static <C, R> InfixParselet<C, R> unwrap(InfixParselet<C, R> parselet) {
+        return parselet instanceof ProfiledInfix ? ((ProfiledInfix<C, R>)parselet).delegate : parselet;
+    }
+    
+    private LatencyHistogram histogram(String label) {
+        return entries.computeIfAbsent(label, __ -> new LatencyHistogram());
+    }
+    
+    private int enter() {
+        if(depth == children.length) {
+            children = Arrays.copyOf(children, depth * 2);
+        }
+        children[depth] = 0;
+        return depth++;
+    }
+    
+    private void exit(int d, long start, LatencyHistogram h) {
+        long elapsed = System.nanoTime() - start;
+        depth = d;
+        h.record(elapsed - children[d]);
+        if(d > 0) {
+            children[d - 1] += elapsed;
+        }
+    }
+    
+    private static class ProfiledPrefix<C, R> implements PrefixParselet<C, R> {
+        private final Profiler profiler;
+        private final LatencyHistogram histogram;
+        private final PrefixParselet<C, R> delegate;
+    
+        ProfiledPrefix(Profiler profiler, LatencyHistogram histogram, PrefixParselet<C, R> delegate) {
+            this.profiler = profiler;
+            this.histogram = histogram;
+            this.delegate = delegate;
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public R parse(C context, @Nonnull Parser<C, R> parser, @Nonnull Token token) {
+            int d = profiler.enter();
+            long start = System.nanoTime();
+            try {
+                return delegate.parse(context, parser, token);
+            } finally {
+                profiler.exit(d, start, histogram);
+            }
+        }
+    }
+    
+    private static class ProfiledInfix<C, R> implements InfixParselet<C, R> {
+        private final Profiler profiler;
+        private final LatencyHistogram histogram;
+        private final InfixParselet<C, R> delegate;
+    
+        ProfiledInfix(Profiler profiler, LatencyHistogram histogram, InfixParselet<C, R> delegate) {
+            this.profiler = profiler;
+            this.histogram = histogram;
+            this.delegate = delegate;
+        }
+    
+        @Nonnegative
+        @CheckReturnValue
+        @Override
+        public int precedence() {
+            return delegate.precedence();
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public R parse(C context, @Nonnull Parser<C, R> parser, @Nonnull R left, @Nonnull Token token) {
+            int d = profiler.enter();
+            long start = System.nanoTime();
+            try {
+                return delegate.parse(context, parser, left, token);
+            } finally {
+                profiler.exit(d, start, histogram);
+            }
+        }
+    }
+}
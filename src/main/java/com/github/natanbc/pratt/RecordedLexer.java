@@ -0,0 +1,282 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lexer that replays a stream recorded by {@link TokenStreamWriter}. No characters
+ * are decoded or scanned, each call to {@link #parse()} only decodes the next token
+ * from the buffer.
+ *
+ * <br>Since there is no source available, the character methods of this lexer behave
+ * as if the input was empty, and error contexts only contain the value of the last
+ * token returned.
+ */
+public class RecordedLexer extends Lexer {
+    private final ReplayStream stream;
+    private final ByteBuffer buffer;
+    private final TokenKindTable kinds;
+    private final TokenKind eofKind;
+    private final String[] lastValues;
+    private final int start;
+    private byte[] scratch;
+    private Token eofToken;
+    private int line = 1;
+    
+    /**
+     * Creates a lexer replaying the provided stream. The buffer's position and
+     * limit are not modified.
+     *
+     * @param buffer Buffer containing the stream.
+     * @param kinds Kinds used when recording the stream, in the same order.
+     */
+    public RecordedLexer(@Nonnull ByteBuffer buffer, @Nonnull TokenKind... kinds) {
+        this(new ReplayStream(), buffer.duplicate(), new TokenKindTable(kinds));
+    }
+    
+    private RecordedLexer(ReplayStream stream, ByteBuffer buffer, TokenKindTable kinds) {
+        super(stream);
+        this.stream = stream;
+        this.buffer = buffer;
+        this.kinds = kinds;
+        this.lastValues = new String[kinds.size()];
+        if(buffer.remaining() < 4 || readInt() != TokenStreamWriter.MAGIC) {
+            throw new IllegalArgumentException("Buffer does not contain a token stream");
+        }
+        int version = readVarInt();
+        if(version != TokenStreamWriter.VERSION) {
+            throw new IllegalArgumentException("Unsupported token stream version " + version);
+        }
+        int count = readVarInt();
+        if(count != kinds.size()) {
+            throw new IllegalArgumentException("Stream was recorded with " + count +
+                    " token kinds, but " + kinds.size() + " were provided");
+        }
+        this.eofKind = kinds.kind(readVarInt());
+        this.start = buffer.position();
+    }
+    
+    /**
+     * Creates a lexer replaying the stream stored in a file. The file is
+     * memory mapped, and must not be modified while the lexer is in use.
+     *
+     * @param file File containing the stream.
+     * @param kinds Kinds used when recording the stream, in the same order.
+     *
+     * @return A lexer replaying the file.
+     *
+     * @throws IOException If the file can't be mapped.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static RecordedLexer open(@Nonnull Path file, @Nonnull TokenKind... kinds) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new RecordedLexer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), kinds);
+        }
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public Token parse() {
+        if(!buffer.hasRemaining()) {
+            if(eofToken == null) {
+                eofToken = new Token(eofKind, stream.pos(), "<EOF>");
+            }
+            return stream.current = eofToken;
+        }
+        int id = readVarInt();
+        TokenKind kind = kinds.kind(id);
+        int delta = readVarInt();
+        line += (delta >>> 1) ^ -(delta & 1);
+        int column = readVarInt();
+        int length = readVarInt();
+        String value;
+        if(length == 0) {
+            value = lastValues[id];
+            if(value == null) {
+                throw new IllegalStateException("Corrupted token stream: missing value for " + kind);
+            }
+        } else {
+            value = lastValues[id] = readString(length - 1);
+        }
+        Token t = new Token(kind, new Position(line, column), value);
+        if(kind.equals(eofKind)) {
+            eofToken = t;
+        }
+        return stream.current = t;
+    }
+    
+    /**
+     * Returns a checkpoint of the replay state. Creating it copies the table of
+     * last values per kind, so it costs time proportional to the number of kinds.
+     *
+     * @return A checkpoint of the current state.
+     */
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public Mark mark() {
+        return new ReplayMark(this, buffer.position(), line, lastValues.clone(), stream.current, nextToken);
+    }
+    
+    @Override
+    public void reset(@Nonnull Mark mark) {
+        if(!(mark instanceof ReplayMark) || ((ReplayMark)mark).owner != this) {
+            throw new IllegalArgumentException("Mark was not created by this lexer");
+        }
+        ReplayMark m = (ReplayMark)mark;
+        buffer.position(m.position);
+        line = m.line;
+        System.arraycopy(m.lastValues, 0, lastValues, 0, lastValues.length);
+        stream.current = m.current;
+        nextToken = m.nextToken;
+    }
+    
+    /**
+     * Returns to the first token of the stream.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        buffer.position(start);
+        line = 1;
+        Arrays.fill(lastValues, null);
+        stream.current = null;
+        eofToken = null;
+    }
+    
+    /**
+     * Not supported, as recorded lexers replay their buffer.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void reset(@Nonnull Reader reader) {
+        throw new UnsupportedOperationException("Recorded lexers replay a token stream");
+    }
+    
+    /**
+     * Not supported, as recorded lexers replay their buffer.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void reset(@Nonnull CharacterStream stream) {
+        throw new UnsupportedOperationException("Recorded lexers replay a token stream");
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    @Override
+    public TokenKind eofKind() {
+        return eofKind;
+    }
+    
+    private String readString(int length) {
+        if(buffer.remaining() < length) {
+            throw new IllegalStateException("Truncated token stream");
+        }
+        String s;
+        if(buffer.hasArray()) {
+            s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            if(scratch == null || scratch.length < length) {
+                scratch = new byte[Math.max(length, 64)];
+            }
+            buffer.get(scratch, 0, length);
+            s = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+    
+    private int readInt() {
+        return (buffer.get() & 0xFF) << 24 | (buffer.get() & 0xFF) << 16 | (buffer.get() & 0xFF) << 8 | (buffer.get() & 0xFF);
+    }
+    
+    private int readVarInt() {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            if(!buffer.hasRemaining()) {
+                throw new IllegalStateException("Truncated token stream");
+            }
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if(b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Corrupted token stream: varint too long");
+    }
+    
+    private static final class ReplayMark implements Mark {
+        private final RecordedLexer owner;
+        private final int position;
+        private final int line;
+        private final String[] lastValues;
+        private final Token current;
+        private final Token nextToken;
+    
+        ReplayMark(RecordedLexer owner, int position, int line, String[] lastValues, Token current, Token nextToken) {
+            this.owner = owner;
+            this.position = position;
+            this.line = line;
+            this.lastValues = lastValues;
+            this.current = current;
+            this.nextToken = nextToken;
+        }
+    }
+    
+    private static class ReplayStream implements CharacterStream {
+        private Token current;
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public ErrorContext context(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around) {
+            if(current != null && current.position().equals(pos)) {
+                return new ErrorContext(0, 0, current.value());
+            }
+            return new ErrorContext(0, 0, "");
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public Position pos() {
+            return current == null ? new Position(1, 0) : current.position();
+        }
+    
+        @Override
+        public void backTo(int line, int column) {
+            throw new UnsupportedOperationException("Recorded token streams have no characters");
+        }
+    
+        @Override
+        public void back() {
+            throw new UnsupportedOperationException("Recorded token streams have no characters");
+        }
+    
+        @Deprecated
+        @Override
+        public void unread(@Nonnegative int ch) {
+            throw new UnsupportedOperationException("Recorded token streams have no characters");
+        }
+    
+        @CheckReturnValue
+        @Override
+        public int read(boolean ignoreWhitespace) {
+            return -1;
+        }
+    }
+}
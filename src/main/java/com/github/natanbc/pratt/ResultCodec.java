@@ -0,0 +1,39 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts parse results to and from a binary format, so they can be stored
+ * by a {@link ParseCache}.
+ *
+ * @param <R> Type of the results.
+ */
+public interface ResultCodec<R> {
+    /**
+     * Writes a result.
+     *
+     * @param result Result to write.
+     * @param out Output to write to.
+     *
+     * @throws IOException If the output throws.
+     */
+    void write(@Nonnull R result, @Nonnull DataOutput out) throws IOException;
+    
+    /**
+     * Reads a result written by {@link #write(Object, DataOutput)}. Codecs should
+     * throw if the data is invalid, in which case the cache parses the input again.
+     *
+     * @param in Input to read from.
+     *
+     * @return The result read.
+     *
+     * @throws IOException If the data is invalid or the input throws.
+     */
+    @Nonnull
+    @CheckReturnValue
+    R read(@Nonnull DataInput in) throws IOException;
+}
@@ -0,0 +1,163 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Read-only view of the source retained by a {@link CharacterStream} at some point
+ * in time. Contexts are computed lazily from the retained characters only, so creating
+ * them never reads more input or changes the state of the stream, and a snapshot can
+ * be handed to another thread to build error messages.
+ *
+ * @see CharacterStream#snapshot()
+ */
+public final class SourceSnapshot {
+    /** Snapshot without any source, for streams that don't retain their input. */
+    public static final SourceSnapshot EMPTY = new SourceSnapshot(new char[0], 0, new int[] { 0 }, 1);
+    
+    private final char[] chars;
+    private final int size;
+    private final int[] lineStarts;
+    private final int lineCount;
+    private final int firstLine;
+    
+    /**
+     * Creates a snapshot over retained characters. The arrays are not copied, so the
+     * caller must not modify the valid part of them afterwards.
+     *
+     * @param chars Retained characters.
+     * @param size Number of valid characters.
+     * @param lineStarts Offset where each line starts.
+     * @param lineCount Number of valid line starts.
+     */
+    public SourceSnapshot(@Nonnull char[] chars, @Nonnegative int size, @Nonnull int[] lineStarts, @Nonnegative int lineCount) {
+        this(chars, size, lineStarts, lineCount, 1);
+    }
+    
+    //for streams that discarded their first lines, where lineStarts[0] is the start of firstLine
+    SourceSnapshot(char[] chars, int size, int[] lineStarts, int lineCount, int firstLine) {
+        this.chars = chars;
+        this.size = size;
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+        this.firstLine = firstLine;
+    }
+    
+    /**
+     * @return Number of characters available in this snapshot.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns a context for the given position, using only the characters in this snapshot.
+     *
+     * @param pos Position for the context.
+     * @param length Length of the token.
+     * @param around How many characters to include before and after the token, at most.
+     *
+     * @return The context. Empty if the position isn't in the snapshot.
+     *
+     * @see CharacterStream#context(Position, int, int)
+     */
+    @Nonnull
+    @CheckReturnValue
+    public ErrorContext context(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around) {
+        return context(chars, size, lineStarts, lineCount, firstLine, pos, length, around);
+    }
+    
+    /**
+     * Builds a context from retained characters. The context copies the characters it
+     * uses, so streams can call this over their live buffers without sharing them.
+     */
+    static ErrorContext context(char[] chars, int size, int[] lineStarts, int lineCount, int firstLine,
+                                Position pos, int length, int around) {
+        //index of the line in lineStarts, plus one
+        int l = pos.line() - firstLine + 1;
+        if(l < 1) {
+            return new ErrorContext(0, 0, "");
+        }
+        int start;
+        int end;
+        if(l < lineCount) {
+            start = lineStarts[l - 1];
+            end = lineStarts[l] - 1;
+        } else {
+            //lines after the last known start may have been retained without being read yet
+            start = lineStarts[lineCount - 1];
+            for(int i = lineCount; i < l; i++) {
+                while(start < size && chars[start] != '\n') {
+                    start++;
+                }
+                if(start == size) {
+                    return new ErrorContext(0, 0, "");
+                }
+                start++;
+            }
+            end = start;
+            while(end < size && chars[end] != '\n') {
+                end++;
+            }
+        }
+        int lineLength = end - start;
+        int before = Math.min(pos.column() - 1, around);
+        int after = Math.max(Math.min(lineLength - (pos.column() + length - 1), around), 0);
+        int to = Math.min(pos.column() + around + length - 1, lineLength);
+        int from = Math.min(Math.max(pos.column() - around - 1, 0), to);
+        return new ErrorContext(Math.max(before, 0), after, new String(chars, start + from, to - from));
+    }
+    
+    /**
+     * Returns a string containing a {@link #context(Position, int, int) context}
+     * for the given position, with {@code length} characters highlighted.
+     *
+     * @param pos Position to start highlighting.
+     * @param length How many characters to highlight.
+     * @param around How many characters to include before and after the token, at most.
+     *
+     * @return The context with the token highlighted.
+     *
+     * @see CharacterStream#prettyContext(Position, int, int)
+     */
+    @Nonnull
+    @CheckReturnValue
+    public String prettyContext(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around) {
+        return highlight(context(pos, length, around), length);
+    }
+    
+    /**
+     * Returns a string containing a {@link #context(Position, int, int) context}
+     * for the given token, with the token value highlighted.
+     *
+     * @param token Token to highlight.
+     *
+     * @return The context with the token highlighted.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public String prettyContextFor(@Nonnull Token token) {
+        return prettyContext(token.position(), token.value().length(), 5);
+    }
+    
+    static String highlight(ErrorContext context, int length) {
+        StringBuilder sb = new StringBuilder(context.value())
+                .append('\n');
+        for(int i = 0; i < context.charsBefore(); i++) {
+            sb.append(' ');
+        }
+        if(length > 1) {
+            sb.append('└');
+            for(int i = 2; i < length; i++) {
+                sb.append('─');
+            }
+            sb.append('┘');
+        } else {
+            sb.append('^');
+        }
+        return sb.toString();
+    }
+}
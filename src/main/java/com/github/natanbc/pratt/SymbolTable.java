@@ -0,0 +1,172 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maps ranges of characters to canonical string instances, so repeated identifiers
+ * share a single string instead of each token holding its own copy. Lookups compare
+ * the characters directly, so no string is created when the symbol is already present.
+ *
+ * <br>The table is bounded: each symbol can only be stored in one slot, chosen by its
+ * hash, and a new symbol evicts the one in its slot. Evicted symbols are still valid
+ * strings, they just stop being shared with later lookups. Strings longer than the
+ * maximum length are never stored.
+ *
+ * <br>Tables are thread safe, and can be shared between lexers.
+ */
+public final class SymbolTable {
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final int maxLength;
+    
+    /**
+     * Creates a table storing symbols up to 64 characters long.
+     *
+     * @param capacity Number of slots in the table, rounded up to a power of two.
+     */
+    public SymbolTable(@Nonnegative int capacity) {
+        this(capacity, 64);
+    }
+    
+    /**
+     * Creates a table.
+     *
+     * @param capacity Number of slots in the table, rounded up to a power of two.
+     * @param maxLength Maximum length of stored symbols.
+     */
+    public SymbolTable(@Nonnegative int capacity, @Nonnegative int maxLength) {
+        if(capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+    
+    /**
+     * @return Number of slots in this table.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int capacity() {
+        return mask + 1;
+    }
+    
+    /**
+     * Returns the canonical string for a range of characters.
+     *
+     * @param chars Array holding the characters.
+     * @param offset Index of the first character.
+     * @param length Number of characters.
+     *
+     * @return A string with the provided characters.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public String intern(@Nonnull char[] chars, @Nonnegative int offset, @Nonnegative int length) {
+        return intern(-1, chars, null, offset, length);
+    }
+    
+    /**
+     * Returns the canonical string for a range of characters.
+     *
+     * @param chars Sequence holding the characters.
+     * @param start Index of the first character.
+     * @param end Index after the last character.
+     *
+     * @return A string with the provided characters.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public String intern(@Nonnull CharSequence chars, @Nonnegative int start, @Nonnegative int end) {
+        return intern(-1, null, chars, start, end - start);
+    }
+    
+    /**
+     * Returns the canonical string for a character followed by a sequence, such as a word
+     * whose first character was read before the rest. No string is created when the symbol
+     * is already present.
+     *
+     * @param first First character of the symbol.
+     * @param rest Remaining characters of the symbol.
+     *
+     * @return A string with the provided characters.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public String intern(char first, @Nonnull CharSequence rest) {
+        return intern(first, null, rest, 0, rest.length() + 1);
+    }
+    
+    /**
+     * Removes every symbol from this table.
+     */
+    public void clear() {
+        for(int i = 0; i <= mask; i++) {
+            slots.set(i, null);
+        }
+    }
+    
+    private int index(int hash) {
+        //mix the high bits in, as the mask only keeps the low ones
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+    
+    //shared by every overload: the symbol's characters are read from either array or seq,
+    //starting at start, and preceded by first unless it's negative
+    private String intern(int first, char[] array, CharSequence seq, int start, int length) {
+        if(length > maxLength) {
+            return create(first, array, seq, start, length);
+        }
+        int h = 0;
+        for(int i = 0; i < length; i++) {
+            h = 31 * h + charAt(first, array, seq, start, i);
+        }
+        int slot = index(h);
+        String s = slots.get(slot);
+        if(s != null && s.length() == length && s.hashCode() == h && equals(s, first, array, seq, start)) {
+            return s;
+        }
+        s = create(first, array, seq, start, length);
+        slots.set(slot, s);
+        return s;
+    }
+    
+    private static char charAt(int first, char[] array, CharSequence seq, int start, int i) {
+        if(first >= 0) {
+            if(i == 0) {
+                return (char)first;
+            }
+            i--;
+        }
+        return array != null ? array[start + i] : seq.charAt(start + i);
+    }
+    
+    private static boolean equals(String s, int first, char[] array, CharSequence seq, int start) {
+        for(int i = 0; i < s.length(); i++) {
+            if(s.charAt(i) != charAt(first, array, seq, start, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static String create(int first, char[] array, CharSequence seq, int start, int length) {
+        if(first < 0 && array != null) {
+            return new String(array, start, length);
+        }
+        StringBuilder sb = new StringBuilder(length);
+        if(first >= 0) {
+            sb.append((char)first);
+            length--;
+        }
+        return (array != null ? sb.append(array, start, length) : sb.append(seq, start, start + length)).toString();
+    }
+}
@@ -0,0 +1,500 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Stores a sequence of tokens in parallel primitive arrays: kind id, line, column,
+ * and the start and length of the value in a shared character array. Kind ids are
+ * the indexes of the kinds given on construction.
+ *
+ * <br>A buffer is usually filled up front with {@link #tokenize(Lexer, TokenKind...)}
+ * and then parsed through a {@link #lexer() cursor}, which walks the arrays by index,
+ * so lookahead and backtracking never run the original lexer again. {@link Token} objects
+ * are only created when requested, and at most once per index.
+ */
+public class TokenBuffer {
+    private final TokenKindTable kinds;
+    private int[] kindIds = new int[64];
+    private int[] lines = new int[64];
+    private int[] columns = new int[64];
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private char[] text = new char[256];
+    private Token[] tokens;
+    private int size;
+    private int textSize;
+    
+    /**
+     * Creates an empty buffer.
+     *
+     * @param kinds Every kind that can be stored in this buffer.
+     */
+    public TokenBuffer(@Nonnull TokenKind... kinds) {
+        this(new TokenKindTable(kinds));
+    }
+    
+    TokenBuffer(TokenKindTable kinds) {
+        this.kinds = kinds;
+    }
+    
+    /**
+     * Reads every token from a lexer, up to and including the EOF token,
+     * into a new buffer.
+     *
+     * @param lexer Lexer to read from.
+     * @param kinds Every kind the lexer can return.
+     *
+     * @return A buffer containing all tokens.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static TokenBuffer tokenize(@Nonnull Lexer lexer, @Nonnull TokenKind... kinds) {
+        TokenBuffer buffer = new TokenBuffer(kinds);
+        TokenKind eof = lexer.eofKind();
+        Token t;
+        do {
+            t = lexer.next();
+            buffer.add(t);
+        } while(!t.kind().equals(eof));
+        return buffer;
+    }
+    
+    /**
+     * Appends a token to this buffer.
+     *
+     * @param token Token to append.
+     */
+    public void add(@Nonnull Token token) {
+        int id = kinds.id(token.kind());
+        if(size == kindIds.length) {
+            int cap = size * 2;
+            kindIds = Arrays.copyOf(kindIds, cap);
+            lines = Arrays.copyOf(lines, cap);
+            columns = Arrays.copyOf(columns, cap);
+            starts = Arrays.copyOf(starts, cap);
+            lengths = Arrays.copyOf(lengths, cap);
+            if(tokens != null) {
+                tokens = Arrays.copyOf(tokens, cap);
+            }
+        }
+        String value = token.value();
+        int len = value.length();
+        if(textSize + len > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + len));
+        }
+        value.getChars(0, len, text, textSize);
+        kindIds[size] = id;
+        lines[size] = token.position().line();
+        columns[size] = token.position().column();
+        starts[size] = textSize;
+        lengths[size] = len;
+        size++;
+        textSize += len;
+    }
+    
+    /**
+     * Appends the first tokens of another buffer sharing the same kind table,
+     * moving them by a number of lines.
+     */
+    void append(TokenBuffer other, int count, int lineOffset) {
+        int cap = kindIds.length;
+        while(cap < size + count) {
+            cap *= 2;
+        }
+        if(cap != kindIds.length) {
+            kindIds = Arrays.copyOf(kindIds, cap);
+            lines = Arrays.copyOf(lines, cap);
+            columns = Arrays.copyOf(columns, cap);
+            starts = Arrays.copyOf(starts, cap);
+            lengths = Arrays.copyOf(lengths, cap);
+            if(tokens != null) {
+                tokens = Arrays.copyOf(tokens, cap);
+            }
+        }
+        int textLength = count == 0 ? 0 : other.starts[count - 1] + other.lengths[count - 1];
+        if(textSize + textLength > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + textLength));
+        }
+        System.arraycopy(other.text, 0, text, textSize, textLength);
+        System.arraycopy(other.kindIds, 0, kindIds, size, count);
+        System.arraycopy(other.columns, 0, columns, size, count);
+        System.arraycopy(other.lengths, 0, lengths, size, count);
+        for(int i = 0; i < count; i++) {
+            lines[size + i] = other.lines[i] + lineOffset;
+            starts[size + i] = other.starts[i] + textSize;
+        }
+        size += count;
+        textSize += textLength;
+    }
+    
+    /**
+     * @return The number of tokens stored.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @param index Index of the token.
+     *
+     * @return The id of the token's kind, which is its index in the
+     *         array of kinds given on construction.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int kindId(@Nonnegative int index) {
+        return kindIds[checkIndex(index)];
+    }
+    
+    /**
+     * @param index Index of the token.
+     *
+     * @return The kind of the token.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public TokenKind kind(@Nonnegative int index) {
+        return kinds.kind(kindIds[checkIndex(index)]);
+    }
+    
+    /**
+     * @param index Index of the token.
+     *
+     * @return The line of the token.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int line(@Nonnegative int index) {
+        return lines[checkIndex(index)];
+    }
+    
+    /**
+     * @param index Index of the token.
+     *
+     * @return The column of the token.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int column(@Nonnegative int index) {
+        return columns[checkIndex(index)];
+    }
+    
+    /**
+     * @param index Index of the token.
+     *
+     * @return The offset of the token's value in the {@link #text() text} array.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int start(@Nonnegative int index) {
+        return starts[checkIndex(index)];
+    }
+    
+    /**
+     * @param index Index of the token.
+     *
+     * @return The length of the token's value.
+     */
+    @Nonnegative
+    @CheckReturnValue
+    public int length(@Nonnegative int index) {
+        return lengths[checkIndex(index)];
+    }
+    
+    /**
+     * Returns the array holding the values of all tokens, as delimited by
+     * {@link #start(int) start} and {@link #length(int) length}.
+     *
+     * <br>This array is managed by the buffer, so it should not be modified.
+     *
+     * @return The array holding token values.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public char[] text() {
+        return text;
+    }
+    
+    /**
+     * Returns the token at the given index. The object is created on the first
+     * call and reused on subsequent ones.
+     *
+     * @param index Index of the token.
+     *
+     * @return The token at the given index.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Token token(@Nonnegative int index) {
+        checkIndex(index);
+        if(tokens == null) {
+            tokens = new Token[kindIds.length];
+        }
+        Token t = tokens[index];
+        if(t == null) {
+            t = tokens[index] = new Token(
+                    kinds.kind(kindIds[index]),
+                    new Position(lines[index], columns[index]),
+                    new String(text, starts[index], lengths[index])
+            );
+        }
+        return t;
+    }
+    
+    /**
+     * Creates a new lexer that returns the tokens in this buffer, starting at index zero.
+     * The last token is treated as EOF: once it is reached, it is returned by every further call.
+     *
+     * @return A lexer over this buffer.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public Cursor lexer() {
+        return new Cursor(this);
+    }
+    
+    private int checkIndex(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+    
+    /**
+     * Rebuilds a line from the tokens on it, placing each value at its column.
+     * Characters that weren't part of any token are replaced by spaces.
+     */
+    private ErrorContext context(Position pos, int length, int around) {
+        int first = 0;
+        while(first < size && lines[first] < pos.line()) first++;
+        StringBuilder sb = new StringBuilder();
+        for(int i = first; i < size && lines[i] == pos.line(); i++) {
+            int col = columns[i] - 1;
+            //overlapping tokens, such as EOF, are synthetic and don't belong in the line
+            if(col < sb.length()) continue;
+            while(sb.length() < col) sb.append(' ');
+            sb.append(text, starts[i], lengths[i]);
+        }
+        int column = Math.max(pos.column(), 1);
+        int from = Math.max(column - around - 1, 0);
+        int to = Math.max(Math.min(column + around + length - 1, sb.length()), from);
+        while(sb.length() < from) sb.append(' ');
+        int before = Math.min(column - 1, around);
+        int after = Math.max(Math.min(sb.length() - (column + length - 1), around), 0);
+        return new ErrorContext(before, after, sb.substring(from, to));
+    }
+    
+    /**
+     * Lexer that walks a {@link TokenBuffer} by index. {@link #next()}, {@link #push(Token)},
+     * {@link #peekKind()}, {@link #seek(int)} and {@link #reset(Mark)} are plain index operations.
+     */
+    public static class Cursor extends Lexer {
+        private final TokenBuffer buffer;
+        private final TokenKind eofKind;
+        private int index;
+    
+        private Cursor(TokenBuffer buffer) {
+            this(buffer, new CursorStream(buffer));
+        }
+    
+        private Cursor(TokenBuffer buffer, CursorStream stream) {
+            super(stream);
+            if(buffer.size == 0) {
+                throw new IllegalArgumentException("Buffer is empty");
+            }
+            stream.cursor = this;
+            this.buffer = buffer;
+            this.eofKind = buffer.kind(buffer.size - 1);
+        }
+    
+        /**
+         * @return The buffer this cursor walks.
+         */
+        @Nonnull
+        @CheckReturnValue
+        public TokenBuffer buffer() {
+            return buffer;
+        }
+    
+        /**
+         * @return The index of the token that will be returned by the next call to {@link #next()}.
+         */
+        @Nonnegative
+        @CheckReturnValue
+        public int index() {
+            return index;
+        }
+    
+        /**
+         * Moves this cursor to the given index, discarding any {@link #push(Token) pushed} token.
+         *
+         * @param index Index of the token that will be returned by the next call to {@link #next()}.
+         */
+        public void seek(@Nonnegative int index) {
+            buffer.checkIndex(index);
+            this.index = index;
+            this.nextToken = null;
+        }
+    
+        /**
+         * Returns to the first token of the buffer, restarting the budget if one is attached.
+         */
+        @Override
+        public void reset() {
+            super.reset();
+            seek(0);
+        }
+    
+        /**
+         * Not supported, as cursors read from their buffer.
+         *
+         * @throws UnsupportedOperationException Always.
+         */
+        @Override
+        public void reset(@Nonnull Reader reader) {
+            throw new UnsupportedOperationException("Cursors read from a token buffer");
+        }
+    
+        /**
+         * Not supported, as cursors read from their buffer.
+         *
+         * @throws UnsupportedOperationException Always.
+         */
+        @Override
+        public void reset(@Nonnull CharacterStream stream) {
+            throw new UnsupportedOperationException("Cursors read from a token buffer");
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public Mark mark() {
+            return new CursorMark(this, index, nextToken);
+        }
+    
+        @Override
+        public void reset(@Nonnull Mark mark) {
+            if(!(mark instanceof CursorMark) || ((CursorMark)mark).owner != this) {
+                throw new IllegalArgumentException("Mark was not created by this cursor");
+            }
+            CursorMark m = (CursorMark)mark;
+            if(budget != null) {
+                budget.rewind(index - m.index);
+            }
+            index = m.index;
+            nextToken = m.nextToken;
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public Token parse() {
+            Token t = buffer.token(index);
+            if(index < buffer.size - 1) {
+                index++;
+            }
+            return t;
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public TokenKind eofKind() {
+            return eofKind;
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public TokenKind peekKind() {
+            if(nextToken != null) {
+                return nextToken.kind();
+            }
+            return buffer.kind(index);
+        }
+    
+        @Override
+        public void push(@Nonnull Token t) {
+            if(nextToken == null && index > 0 && returned(index - 1, t)) {
+                index--;
+                return;
+            }
+            if(nextToken == null && index == buffer.size - 1 && returned(index, t)) {
+                //EOF is never consumed, so there's nothing to undo
+                return;
+            }
+            super.push(t);
+        }
+    
+        //whether or not the token is the one this buffer returned for the index. tokens are
+        //only created when returned, so none may exist yet, for example right after a seek
+        private boolean returned(int i, Token t) {
+            Token[] tokens = buffer.tokens;
+            return tokens != null && tokens[i] == t;
+        }
+    }
+    
+    private static final class CursorMark implements Mark {
+        private final Cursor owner;
+        private final int index;
+        private final Token nextToken;
+    
+        CursorMark(Cursor owner, int index, Token nextToken) {
+            this.owner = owner;
+            this.index = index;
+            this.nextToken = nextToken;
+        }
+    }
+    
+    private static class CursorStream implements CharacterStream {
+        private final TokenBuffer buffer;
+        private Cursor cursor;
+    
+        CursorStream(TokenBuffer buffer) {
+            this.buffer = buffer;
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public ErrorContext context(@Nonnull Position pos, @Nonnegative int length, @Nonnegative int around) {
+            return buffer.context(pos, length, around);
+        }
+    
+        @Nonnull
+        @CheckReturnValue
+        @Override
+        public Position pos() {
+            int i = cursor.index;
+            return i == 0 ? new Position(1, 0) : buffer.token(i - 1).position();
+        }
+    
+        @Override
+        public void backTo(int line, int column) {
+            throw new UnsupportedOperationException("Token buffers have no characters, use Cursor.seek instead");
+        }
+    
+        @Override
+        public void back() {
+            throw new UnsupportedOperationException("Token buffers have no characters, use Cursor.seek instead");
+        }
+    
+        @Deprecated
+        @Override
+        public void unread(@Nonnegative int ch) {
+            throw new UnsupportedOperationException("Token buffers have no characters");
+        }
+    
+        @CheckReturnValue
+        @Override
+        public int read(boolean ignoreWhitespace) {
+            return -1;
+        }
+    }
+}
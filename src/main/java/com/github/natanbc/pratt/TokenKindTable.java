@@ -0,0 +1,55 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps token kinds to small integer ids and back. The id of a kind
+ * is its index in the array provided on construction, so for enums
+ * {@code values()} maps every constant to its ordinal.
+ */
+final class TokenKindTable {
+    private final TokenKind[] kinds;
+    private final Map<TokenKind, Integer> ids;
+    
+    TokenKindTable(@Nonnull TokenKind[] kinds) {
+        if(kinds.length == 0) {
+            throw new IllegalArgumentException("At least one token kind is required");
+        }
+        this.kinds = kinds.clone();
+        this.ids = new HashMap<>(kinds.length * 2);
+        for(int i = 0; i < kinds.length; i++) {
+            if(ids.put(kinds[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate token kind " + kinds[i]);
+            }
+        }
+    }
+    
+    @Nonnegative
+    @CheckReturnValue
+    int size() {
+        return kinds.length;
+    }
+    
+    @Nonnegative
+    @CheckReturnValue
+    int id(@Nonnull TokenKind kind) {
+        Integer id = ids.get(kind);
+        if(id == null) {
+            throw new IllegalArgumentException("Unknown token kind " + kind);
+        }
+        return id;
+    }
+    
+    @Nonnull
+    @CheckReturnValue
+    TokenKind kind(int id) {
+        if(id < 0 || id >= kinds.length) {
+            throw new IllegalArgumentException("Invalid token kind id " + id);
+        }
+        return kinds[id];
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records tokens into a compact binary stream, which can be replayed
+ * later by a {@link RecordedLexer}, skipping all character decoding and
+ * scanning done by the original lexer.
+ *
+ * <br>Token kinds are stored as their index in the array of kinds given
+ * on construction, so the same array (eg the {@code values()} of an enum)
+ * must be provided when replaying. Positions are stored as line deltas
+ * and columns, and token values are only stored when they differ from the
+ * last value seen for the same kind, so fixed tokens such as operators
+ * take two or three bytes each.
+ *
+ * @see RecordedLexer
+ */
+public class TokenStreamWriter implements Closeable {
+    static final int MAGIC = 0x50544B53; // PTKS
+    static final int VERSION = 1;
+    
+    private final OutputStream out;
+    private final TokenKindTable kinds;
+    private final String[] lastValues;
+    private int lastLine = 1;
+    
+    /**
+     * Creates a writer, writing the stream header immediately.
+     *
+     * @param out Output for the stream.
+     * @param eofKind Kind that represents the end of the input.
+     * @param kinds Every kind that can be written. Must contain {@code eofKind}.
+     */
+    public TokenStreamWriter(@Nonnull OutputStream out, @Nonnull TokenKind eofKind, @Nonnull TokenKind... kinds) {
+        this.out = out;
+        this.kinds = new TokenKindTable(kinds);
+        this.lastValues = new String[kinds.length];
+        writeInt(MAGIC);
+        writeVarInt(VERSION);
+        writeVarInt(kinds.length);
+        writeVarInt(this.kinds.id(eofKind));
+    }
+    
+    /**
+     * Reads every token from a lexer, up to and including the EOF token,
+     * and returns the recorded stream.
+     *
+     * @param lexer Lexer to read from.
+     * @param kinds Every kind the lexer can return.
+     *
+     * @return A buffer containing the recorded stream.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public static ByteBuffer record(@Nonnull Lexer lexer, @Nonnull TokenKind... kinds) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(TokenStreamWriter writer = new TokenStreamWriter(baos, lexer.eofKind(), kinds)) {
+            writer.writeAll(lexer);
+        }
+        return ByteBuffer.wrap(baos.toByteArray());
+    }
+    
+    /**
+     * Reads every token from a lexer, up to and including the EOF token,
+     * and writes the recorded stream to a file.
+     *
+     * @param lexer Lexer to read from.
+     * @param file File to write. Replaced if it already exists.
+     * @param kinds Every kind the lexer can return.
+     *
+     * @throws IOException If the file can't be opened.
+     */
+    public static void record(@Nonnull Lexer lexer, @Nonnull Path file, @Nonnull TokenKind... kinds) throws IOException {
+        OutputStream os = new BufferedOutputStream(Files.newOutputStream(file));
+        try(TokenStreamWriter writer = new TokenStreamWriter(os, lexer.eofKind(), kinds)) {
+            writer.writeAll(lexer);
+        }
+    }
+    
+    /**
+     * Writes every token from a lexer, up to and including the EOF token.
+     *
+     * @param lexer Lexer to read from.
+     */
+    public void writeAll(@Nonnull Lexer lexer) {
+        TokenKind eof = lexer.eofKind();
+        Token t;
+        do {
+            t = lexer.next();
+            write(t);
+        } while(!t.kind().equals(eof));
+    }
+    
+    /**
+     * Writes a single token.
+     *
+     * @param token Token to write.
+     */
+    public void write(@Nonnull Token token) {
+        int id = kinds.id(token.kind());
+        Position pos = token.position();
+        writeVarInt(id);
+        int delta = pos.line() - lastLine;
+        writeVarInt((delta << 1) ^ (delta >> 31));
+        writeVarInt(pos.column());
+        lastLine = pos.line();
+        String value = token.value();
+        if(value.equals(lastValues[id])) {
+            writeVarInt(0);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            write(bytes);
+            lastValues[id] = value;
+        }
+    }
+    
+    @Override
+    public void close() {
+        try {
+            out.close();
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private void writeInt(int i) {
+        write(new byte[] { (byte)(i >>> 24), (byte)(i >>> 16), (byte)(i >>> 8), (byte)i });
+    }
+    
+    private void writeVarInt(int i) {
+        try {
+            while((i & ~0x7F) != 0) {
+                out.write((i & 0x7F) | 0x80);
+                i >>>= 7;
+            }
+            out.write(i);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private void write(byte[] bytes) {
+        try {
+            out.write(bytes);
+        } catch(IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Defines which characters are skipped by {@link CharacterStream#read(boolean) read(true)}:
+ * a class of whitespace characters, plus any number of line and block comments. Applied by
+ * {@link DefaultCharacterStream default streams} directly over their buffer, so lexers only
+ * see significant characters. Set with {@link Lexer#trivia(TriviaPolicy)}.
+ *
+ * <br>Policies are immutable, every method returns a new policy.
+ *
+ * <pre>{@code
+ * TriviaPolicy policy = TriviaPolicy.WHITESPACE
+ *         .lineComment("#")
+ *         .blockComment("(*", "*)");
+ * }</pre>
+ */
+public final class TriviaPolicy {
+    /** Skips {@link CharClass#WHITESPACE whitespace}, without any comments. This is the default policy. */
+    public static final TriviaPolicy WHITESPACE = new TriviaPolicy(CharClass.WHITESPACE, new char[0][], new char[0][], new char[0][]);
+    
+    final CharClass whitespace;
+    final char[][] lineComments;
+    final char[][] blockOpen;
+    final char[][] blockClose;
+    //first characters of every comment delimiter
+    final CharClass commentStart;
+    
+    private TriviaPolicy(CharClass whitespace, char[][] lineComments, char[][] blockOpen, char[][] blockClose) {
+        this.whitespace = whitespace;
+        this.lineComments = lineComments;
+        this.blockOpen = blockOpen;
+        this.blockClose = blockClose;
+        StringBuilder starts = new StringBuilder();
+        for(char[] c : lineComments) {
+            starts.append(c[0]);
+        }
+        for(char[] c : blockOpen) {
+            starts.append(c[0]);
+        }
+        this.commentStart = CharClass.anyOf(starts.toString());
+    }
+    
+    /**
+     * Returns a policy skipping the provided whitespace characters, and the same comments
+     * as this policy. Line breaks not in the class are returned to the lexer.
+     *
+     * @param whitespace Characters to skip.
+     *
+     * @return A new policy.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public TriviaPolicy whitespace(@Nonnull CharClass whitespace) {
+        return new TriviaPolicy(whitespace, lineComments, blockOpen, blockClose);
+    }
+    
+    /**
+     * Returns a policy also skipping comments from the provided prefix until the end
+     * of the line. The line break itself is not part of the comment.
+     *
+     * @param prefix Characters starting the comment.
+     *
+     * @return A new policy.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public TriviaPolicy lineComment(@Nonnull String prefix) {
+        return new TriviaPolicy(whitespace, append(lineComments, delimiter(prefix)), blockOpen, blockClose);
+    }
+    
+    /**
+     * Returns a policy also skipping comments between the provided delimiters. Block
+     * comments don't nest, and reading an unterminated comment throws an
+     * {@link IllegalArgumentException}.
+     *
+     * @param open Characters starting the comment.
+     * @param close Characters ending the comment.
+     *
+     * @return A new policy.
+     */
+    @Nonnull
+    @CheckReturnValue
+    public TriviaPolicy blockComment(@Nonnull String open, @Nonnull String close) {
+        return new TriviaPolicy(whitespace, lineComments,
+                append(blockOpen, delimiter(open)), append(blockClose, delimiter(close)));
+    }
+    
+    /**
+     * @return Whether or not this policy has any comments.
+     */
+    @CheckReturnValue
+    public boolean hasComments() {
+        return lineComments.length + blockOpen.length > 0;
+    }
+    
+    private static char[] delimiter(String s) {
+        if(s.isEmpty()) {
+            throw new IllegalArgumentException("Comment delimiters cannot be empty");
+        }
+        return s.toCharArray();
+    }
+    
+    private static char[][] append(char[][] array, char[] value) {
+        char[][] copy = Arrays.copyOf(array, array.length + 1);
+        copy[array.length] = value;
+        return copy;
+    }
+}
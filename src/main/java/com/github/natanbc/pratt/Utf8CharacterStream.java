@@ -0,0 +1,279 @@
+package com.github.natanbc.pratt;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Character stream reading UTF-8 encoded bytes directly, without a {@link java.io.Reader}.
+ * Runs of ASCII are copied with a tight loop, and multi-byte sequences are only decoded
+ * when found. On Java 21 and newer, where the JDK decodes strings with vectorized intrinsics,
+ * input is instead decoded in chunks by
+ * {@link String#String(byte[], int, int, java.nio.charset.Charset)}. Malformed input is
+ * replaced with {@code U+FFFD}, like {@link java.io.InputStreamReader} does by default.
+ *
+ * <br>Positions are reported in characters, as with any other stream, so supplementary
+ * characters count as two columns.
+ */
+public class Utf8CharacterStream extends DefaultCharacterStream {
+    private static final char REPLACEMENT = '�';
+    //inputs are decoded in chunks of at most this many bytes when using the JDK decoder
+    private static final int BULK_CHUNK = 8192;
+    //smaller chunks aren't worth creating a string for
+    private static final int BULK_MIN = 64;
+    
+    private byte[] array;
+    private ByteBuffer direct;
+    private int position;
+    private int limit;
+    //number of chars written by the last call to decode()
+    private int decoded;
+    
+    /**
+     * Creates a stream reading the whole array.
+     *
+     * @param bytes UTF-8 encoded input.
+     */
+    public Utf8CharacterStream(@Nonnull byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * Creates a stream reading part of an array.
+     *
+     * @param bytes UTF-8 encoded input.
+     * @param offset Offset of the first byte.
+     * @param length Number of bytes to read.
+     */
+    public Utf8CharacterStream(@Nonnull byte[] bytes, @Nonnegative int offset, @Nonnegative int length) {
+        bind(bytes, offset, length);
+    }
+    
+    /**
+     * Creates a stream reading the remaining bytes of a buffer. The buffer's position
+     * isn't modified, and its contents must not change while the stream is in use.
+     *
+     * @param buffer UTF-8 encoded input.
+     */
+    public Utf8CharacterStream(@Nonnull ByteBuffer buffer) {
+        bind(buffer);
+    }
+    
+    /**
+     * Rebinds this stream to a new array, keeping the buffers already allocated.
+     *
+     * @param bytes UTF-8 encoded input.
+     */
+    public void reset(@Nonnull byte[] bytes) {
+        reset(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * Rebinds this stream to part of a new array, keeping the buffers already allocated.
+     *
+     * @param bytes UTF-8 encoded input.
+     * @param offset Offset of the first byte.
+     * @param length Number of bytes to read.
+     */
+    public void reset(@Nonnull byte[] bytes, @Nonnegative int offset, @Nonnegative int length) {
+        bind(bytes, offset, length);
+        clear();
+    }
+    
+    /**
+     * Rebinds this stream to a new buffer, keeping the buffers already allocated.
+     *
+     * @param buffer UTF-8 encoded input.
+     */
+    public void reset(@Nonnull ByteBuffer buffer) {
+        bind(buffer);
+        clear();
+    }
+    
+    /**
+     * Not supported, as this stream reads bytes.
+     *
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void reset(@Nonnull Reader reader) {
+        throw new UnsupportedOperationException("Utf8CharacterStream reads from bytes");
+    }
+    
+    private void bind(byte[] bytes, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset = " + offset + ", length = " + length + ", array length = " + bytes.length);
+        }
+        this.array = bytes;
+        this.direct = null;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+    
+    private void bind(ByteBuffer buffer) {
+        if(buffer.hasArray()) {
+            this.array = buffer.array();
+            this.direct = null;
+            this.position = buffer.arrayOffset() + buffer.position();
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.array = null;
+            this.direct = buffer;
+            this.position = buffer.position();
+            this.limit = buffer.limit();
+        }
+    }
+    
+    @Override
+    protected boolean fill() {
+        if(position == limit) {
+            return false;
+        }
+        //two slots, so a surrogate pair always fits
+        ensureCapacity(2);
+        char[] dst = buffer;
+        int d = size;
+        int end = dst.length;
+        if(budget != null) {
+            //once the limit is reached, a single character is decoded to find out whether the input goes past it
+            end = (int)Math.min(end, d + Math.max(1, budget.remainingChars(discarded + d)));
+        }
+        int p = position;
+        byte[] src = array;
+        if(src != null && Platform.fastStringDecoding() && Math.min(limit - p, end - d) >= BULK_MIN) {
+            //UTF-8 never decodes to more chars than bytes, so the chunk always fits
+            int to = sequenceBoundary(src, p, Math.min(limit, p + Math.min(end - d, BULK_CHUNK)));
+            if(to - p >= BULK_MIN) {
+                String chunk = new String(src, p, to - p, StandardCharsets.UTF_8);
+                chunk.getChars(0, chunk.length(), dst, d);
+                position = to;
+                size = d + chunk.length();
+                if(budget != null) {
+                    budget.chars(discarded + size);
+                }
+                return true;
+            }
+        }
+        if(src != null) {
+            while(d < end && p < limit) {
+                //ascii fast path
+                int b;
+                while((b = src[p]) >= 0) {
+                    dst[d++] = (char)b;
+                    if(++p == limit || d == end) break;
+                }
+                if(b >= 0) break;
+                //the window may end before the buffer does, but a decoded character must always fit
+                if(dst.length - d < 2) break;
+                p = decode(p, d);
+                d += decoded;
+            }
+        } else {
+            while(d < end && p < limit) {
+                int b = direct.get(p);
+                if(b >= 0) {
+                    dst[d++] = (char)b;
+                    p++;
+                } else {
+                    if(dst.length - d < 2) break;
+                    p = decode(p, d);
+                    d += decoded;
+                }
+            }
+        }
+        position = p;
+        size = d;
+        if(budget != null) {
+            budget.chars(discarded + size);
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the end of a chunk of bytes that doesn't split a multi-byte sequence,
+     * so decoding the chunk by itself gives the same result as decoding it as part
+     * of the whole input.
+     */
+    private int sequenceBoundary(byte[] src, int from, int to) {
+        if(to == limit) {
+            return to;
+        }
+        for(int k = to - 1; k >= from && k >= to - 3; k--) {
+            int b = src[k] & 0xFF;
+            if(b < 0x80) {
+                return to;
+            }
+            if(b >= 0xC0) {
+                //lead byte, ending the chunk before it is always safe since it can't be part of an earlier sequence
+                int needed = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : 1;
+                return k + needed >= to ? k : to;
+            }
+        }
+        //only continuation bytes, which are replaced one by one
+        return to;
+    }
+    
+    private int get(int i) {
+        return array != null ? array[i] : direct.get(i);
+    }
+    
+    /**
+     * Decodes a multi-byte sequence starting at {@code p} into the buffer at {@code d}.
+     * Returns the position after the sequence and stores the number of chars written
+     * in {@link #decoded}. Malformed sequences are replaced following the same maximal
+     * subpart rule as the JDK decoder, so both produce the same characters.
+     */
+    private int decode(int p, int d) {
+        int b0 = get(p) & 0xFF;
+        int needed;
+        //valid range for the second byte, which rules out overlong forms and values above U+10FFFF
+        int lo = 0x80;
+        int hi = 0xBF;
+        if(b0 >= 0xC2 && b0 <= 0xDF) {
+            needed = 1;
+        } else if(b0 >= 0xE0 && b0 <= 0xEF) {
+            needed = 2;
+            if(b0 == 0xE0) lo = 0xA0;
+        } else if(b0 >= 0xF0 && b0 <= 0xF4) {
+            needed = 3;
+            if(b0 == 0xF0) lo = 0x90;
+            else if(b0 == 0xF4) hi = 0x8F;
+        } else {
+            return replace(d, p + 1);
+        }
+        int cp = b0 & (0x3F >> needed);
+        for(int i = 1; i <= needed; i++) {
+            if(p + i == limit) {
+                return replace(d, p + i);
+            }
+            int b = get(p + i) & 0xFF;
+            if(b < lo || b > hi) {
+                return replace(d, p + i);
+            }
+            lo = 0x80;
+            hi = 0xBF;
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        if(cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+            //the JDK replaces an encoded surrogate with a single character
+            return replace(d, p + needed + 1);
+        }
+        if(cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            buffer[d] = (char)cp;
+            decoded = 1;
+        } else {
+            buffer[d] = Character.highSurrogate(cp);
+            buffer[d + 1] = Character.lowSurrogate(cp);
+            decoded = 2;
+        }
+        return p + needed + 1;
+    }
+    
+    private int replace(int d, int next) {
+        buffer[d] = REPLACEMENT;
+        decoded = 1;
+        return next;
+    }
+}
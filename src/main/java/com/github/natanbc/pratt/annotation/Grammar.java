@@ -0,0 +1,49 @@
+package com.github.natanbc.pratt.annotation;
+
+import com.github.natanbc.pratt.TokenKind;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class holding parselets as a grammar. At compile time, a subclass of
+ * {@link com.github.natanbc.pratt.Parser Parser} is generated in the same package,
+ * registering every field annotated with {@link Prefix} or {@link Infix} and
+ * overriding {@link com.github.natanbc.pratt.Parser#parseExpressionBody(Object, int) parseExpressionBody}
+ * with {@code switch} dispatch on the token kind and constant precedences, so every
+ * parselet call site is monomorphic.
+ *
+ * <br>Annotated fields must be static and not private, with types implementing
+ * {@link com.github.natanbc.pratt.PrefixParselet PrefixParselet} or
+ * {@link com.github.natanbc.pratt.InfixParselet InfixParselet}, all with the same
+ * context and result types. Parselets registered at runtime on the generated parser
+ * are still used for kinds the grammar doesn't handle, including kinds of other types.
+ * Registering a parselet for a kind the grammar handles throws an
+ * {@link UnsupportedOperationException}, as it would never be called.
+ *
+ * <br>The processor isn't registered by the main jar, so it only runs when enabled,
+ * with the {@code processor} classifier of this library on the annotation processor path:
+ *
+ * <pre>{@code
+ * annotationProcessor 'com.github.natanbc:pratt-parser:<version>:processor'
+ * }</pre>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Grammar {
+    /**
+     * @return Enum with the token kinds used by this grammar. Kinds are referenced by
+     *         constant name in {@link Prefix} and {@link Infix}.
+     */
+    Class<? extends TokenKind> kinds();
+    
+    /**
+     * @return Simple name of the generated parser. Defaults to the name of the annotated
+     *         class followed by {@code Parser}.
+     */
+    String name() default "";
+}
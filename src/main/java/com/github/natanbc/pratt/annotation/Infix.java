@@ -0,0 +1,31 @@
+package com.github.natanbc.pratt.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Registers an {@link com.github.natanbc.pratt.InfixParselet InfixParselet} field
+ * of a {@link Grammar grammar}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Infix {
+    /**
+     * @return Names of the token kinds handled by the parselet.
+     */
+    String[] value();
+    
+    /**
+     * Precedence of the parselet, compiled as a constant into the generated parser.
+     * Must be equal to the value returned by the parselet's
+     * {@link com.github.natanbc.pratt.InfixParselet#precedence() precedence()},
+     * which is verified when the generated parser is created.
+     *
+     * @return Precedence of the parselet.
+     */
+    int precedence();
+}
@@ -0,0 +1,21 @@
+package com.github.natanbc.pratt.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Registers a {@link com.github.natanbc.pratt.PrefixParselet PrefixParselet} field
+ * of a {@link Grammar grammar}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Prefix {
+    /**
+     * @return Names of the token kinds handled by the parselet.
+     */
+    String[] value();
+}
@@ -0,0 +1,380 @@
+package com.github.natanbc.pratt.processor;
+
+import com.github.natanbc.pratt.annotation.Grammar;
+import com.github.natanbc.pratt.annotation.Infix;
+import com.github.natanbc.pratt.annotation.Prefix;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates a specialized parser for every class annotated with {@link Grammar}.
+ *
+ * @see Grammar
+ */
+@SupportedAnnotationTypes("com.github.natanbc.pratt.annotation.Grammar")
+public class GrammarProcessor extends AbstractProcessor {
+    private static final String PKG = "com.github.natanbc.pratt.";
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+    
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for(Element e : roundEnv.getElementsAnnotatedWith(Grammar.class)) {
+            if(e.getKind() != ElementKind.CLASS) {
+                error(e, "@Grammar can only be used on classes");
+                continue;
+            }
+            try {
+                write(readModel((TypeElement)e));
+            } catch(GrammarException ex) {
+                error(ex.element, ex.getMessage());
+            } catch(IOException ex) {
+                error(e, "Unable to write generated parser: " + ex);
+            }
+        }
+        return true;
+    }
+    
+    private void error(Element e, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+    }
+    
+    private void write(GrammarModel m) throws IOException {
+        String qualified = m.pkg.isEmpty() ? m.name : m.pkg + "." + m.name;
+        StringBuilder sb = new StringBuilder();
+        if(!m.pkg.isEmpty()) {
+            sb.append("package ").append(m.pkg).append(";\n\n");
+        }
+        String parserType = PKG + "Parser<" + m.context + ", " + m.result + ">";
+        String kind = m.kinds;
+        sb.append("/**\n * Parser generated from {@link ").append(m.grammar).append("}.\n */\n")
+          .append("public class ").append(m.name).append(" extends ").append(parserType).append(" {\n")
+          .append("    private boolean compiled;\n    \n");
+    
+        //constructors
+        sb.append("    public ").append(m.name).append("(@javax.annotation.Nonnull ").append(PKG).append("Lexer lexer) {\n")
+          .append("        super(lexer);\n");
+        for(Map.Entry<String, String> e : m.prefix.entrySet()) {
+            sb.append("        register(").append(kind).append('.').append(e.getKey()).append(", ")
+              .append(m.grammar).append('.').append(e.getValue()).append(");\n");
+        }
+        for(Map.Entry<String, String> e : m.infix.entrySet()) {
+            sb.append("        register(").append(kind).append('.').append(e.getKey()).append(", ")
+              .append(m.grammar).append('.').append(e.getValue()).append(");\n");
+        }
+        for(Map.Entry<String, Integer> e : m.infixPrecedences.entrySet()) {
+            String field = m.grammar + "." + e.getKey();
+            sb.append("        if(").append(field).append(".precedence() != ").append(e.getValue()).append(") {\n")
+              .append("            throw new IllegalStateException(\"Precedence of ").append(field)
+              .append(" is \" + ").append(field).append(".precedence() + \", but the grammar declares ")
+              .append(e.getValue()).append("\");\n")
+              .append("        }\n");
+        }
+        sb.append("        compiled = true;\n")
+          .append("    }\n    \n")
+          .append("    public ").append(m.name).append("(@javax.annotation.Nonnull ").append(PKG).append("TokenBuffer buffer) {\n")
+          .append("        this(buffer.lexer());\n")
+          .append("    }\n    \n");
+    
+        //parselets of compiled kinds are called directly, so replacing them in the maps would have no effect
+        String prefixType = PKG + "PrefixParselet<" + m.context + ", " + m.result + ">";
+        String infixType = PKG + "InfixParselet<" + m.context + ", " + m.result + ">";
+        registerOverride(sb, m, prefixType, m.prefix.keySet(), "prefix");
+        registerOverride(sb, m, infixType, m.infix.keySet(), "infix");
+    
+        //parseExpressionBody, so parseExpression still checks the budget
+        sb.append("    @javax.annotation.Nonnull\n")
+          .append("    @javax.annotation.CheckReturnValue\n")
+          .append("    @Override\n")
+          .append("    protected ").append(m.result).append(" parseExpressionBody(").append(m.context)
+          .append(" context, @javax.annotation.Nonnegative int precedence) {\n")
+          .append("        ").append(PKG).append("Token t = lexer.next();\n")
+          .append("        if(t.kind().equals(lexer.eofKind())) {\n")
+          .append("            throw unexpectedToken(t);\n")
+          .append("        }\n")
+          .append("        ").append(m.result).append(" left;\n");
+        //kinds of other types, such as ones from a lexer shared with another grammar, use the registered parselets
+        sb.append("        if(t.kind() instanceof ").append(kind).append(") {\n")
+          .append("            switch((").append(kind).append(")t.kind()) {\n");
+        for(Map.Entry<String, String> e : m.prefix.entrySet()) {
+            sb.append("                case ").append(e.getKey()).append(":\n")
+              .append("                    left = ").append(m.grammar).append('.').append(e.getValue())
+              .append(".parse(context, this, t);\n")
+              .append("                    break;\n");
+        }
+        sb.append("                default:\n")
+          .append("                    left = registeredPrefix(context, t);\n")
+          .append("            }\n")
+          .append("        } else {\n")
+          .append("            left = registeredPrefix(context, t);\n")
+          .append("        }\n")
+          .append("        while(true) {\n")
+          .append("            ").append(PKG).append("TokenKind kind = lexer.peekKind();\n")
+          .append("            int next;\n")
+          .append("            if(kind instanceof ").append(kind).append(") {\n")
+          .append("                switch((").append(kind).append(")kind) {\n");
+        for(Map.Entry<Integer, List<String>> e : m.precedenceGroups().entrySet()) {
+            for(String k : e.getValue()) {
+                sb.append("                    case ").append(k).append(":\n");
+            }
+            sb.append("                        next = ").append(e.getKey()).append(";\n")
+              .append("                        break;\n");
+        }
+        sb.append("                    default:\n")
+          .append("                        next = registeredPrecedence(kind);\n")
+          .append("                }\n")
+          .append("            } else {\n")
+          .append("                next = registeredPrecedence(kind);\n")
+          .append("            }\n")
+          .append("            if(precedence >= next) {\n")
+          .append("                return left;\n")
+          .append("            }\n")
+          .append("            t = lexer.next();\n")
+          .append("            if(t.kind() instanceof ").append(kind).append(") {\n")
+          .append("                switch((").append(kind).append(")t.kind()) {\n");
+        for(Map.Entry<String, String> e : m.infix.entrySet()) {
+            sb.append("                    case ").append(e.getKey()).append(":\n")
+              .append("                        left = ").append(m.grammar).append('.').append(e.getValue())
+              .append(".parse(context, this, left, t);\n")
+              .append("                        break;\n");
+        }
+        sb.append("                    default:\n")
+          .append("                        left = registeredInfix(context, left, t);\n")
+          .append("                }\n")
+          .append("            } else {\n")
+          .append("                left = registeredInfix(context, left, t);\n")
+          .append("            }\n")
+          .append("        }\n")
+          .append("    }\n    \n");
+    
+        //fallbacks to the parselets registered at runtime
+        sb.append("    private ").append(m.result).append(" registeredPrefix(").append(m.context)
+          .append(" context, ").append(PKG).append("Token t) {\n")
+          .append("        ").append(prefixType).append(" prefix = prefixParselets.get(t.kind());\n")
+          .append("        if(prefix == null) {\n")
+          .append("            throw unexpectedToken(t);\n")
+          .append("        }\n")
+          .append("        return prefix.parse(context, this, t);\n")
+          .append("    }\n    \n")
+          .append("    private int registeredPrecedence(").append(PKG).append("TokenKind kind) {\n")
+          .append("        ").append(infixType).append(" infix = infixParselets.get(kind);\n")
+          .append("        return infix == null ? 0 : infix.precedence();\n")
+          .append("    }\n    \n")
+          .append("    private ").append(m.result).append(" registeredInfix(").append(m.context).append(" context, ")
+          .append(m.result).append(" left, ").append(PKG).append("Token t) {\n")
+          .append("        return infixParselets.get(t.kind()).parse(context, this, left, t);\n")
+          .append("    }\n")
+          .append("}\n");
+    
+        try(Writer w = processingEnv.getFiler().createSourceFile(qualified, m.element).openWriter()) {
+            w.write(sb.toString());
+        }
+    }
+    
+    private void registerOverride(StringBuilder sb, GrammarModel m, String parseletType, Set<String> kinds, String type) {
+        sb.append("    /**\n")
+          .append("     * {@inheritDoc}\n")
+          .append("     *\n")
+          .append("     * @throws UnsupportedOperationException If the ").append(type)
+          .append(" parselet of the kind is compiled into this parser.\n")
+          .append("     */\n")
+          .append("    @Override\n")
+          .append("    public void register(@javax.annotation.Nonnull ").append(PKG).append("TokenKind kind, @javax.annotation.Nonnull ")
+          .append(parseletType).append(" parselet) {\n")
+          .append("        if(compiled && kind instanceof ").append(m.kinds).append(") {\n")
+          .append("            switch((").append(m.kinds).append(")kind) {\n");
+        for(String k : kinds) {
+            sb.append("                case ").append(k).append(":\n");
+        }
+        if(!kinds.isEmpty()) {
+            sb.append("                    throw new UnsupportedOperationException(\"The ").append(type)
+              .append(" parselet for \" + kind + \" is compiled into ").append(m.name).append(" and can't be replaced\");\n");
+        }
+        sb.append("                default:\n")
+          .append("                    break;\n")
+          .append("            }\n")
+          .append("        }\n")
+          .append("        super.register(kind, parselet);\n")
+          .append("    }\n    \n");
+    }
+    
+    private static class GrammarException extends Exception {
+        private final Element element;
+    
+        GrammarException(Element element, String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+    
+    private static class GrammarModel {
+        private final TypeElement element;
+        private final String pkg;
+        private final String grammar;
+        private final String name;
+        private final String kinds;
+        private final Map<String, String> prefix = new LinkedHashMap<>();
+        private final Map<String, String> infix = new LinkedHashMap<>();
+        private final Map<String, Integer> infixKindPrecedences = new LinkedHashMap<>();
+        private final Map<String, Integer> infixPrecedences = new LinkedHashMap<>();
+        private TypeMirror contextType;
+        private TypeMirror resultType;
+        private String context;
+        private String result;
+    
+        private GrammarModel(TypeElement element, String pkg, String name, String kinds) {
+            this.element = element;
+            this.pkg = pkg;
+            this.grammar = element.getQualifiedName().toString();
+            this.name = name;
+            this.kinds = kinds;
+        }
+    
+        Map<Integer, List<String>> precedenceGroups() {
+            Map<Integer, List<String>> groups = new TreeMap<>();
+            for(Map.Entry<String, Integer> e : infixKindPrecedences.entrySet()) {
+                groups.computeIfAbsent(e.getValue(), __ -> new ArrayList<>()).add(e.getKey());
+            }
+            return groups;
+        }
+    }
+    
+    private GrammarModel readModel(TypeElement element) throws GrammarException {
+        Grammar grammar = element.getAnnotation(Grammar.class);
+        TypeMirror kindsType;
+        try {
+            grammar.kinds();
+            throw new GrammarException(element, "Unable to read token kinds of grammar");
+        } catch(MirroredTypeException e) {
+            kindsType = e.getTypeMirror();
+        }
+        Element kindsElement = processingEnv.getTypeUtils().asElement(kindsType);
+        if(kindsElement == null || kindsElement.getKind() != ElementKind.ENUM) {
+            throw new GrammarException(element, "Token kinds of a grammar must be an enum");
+        }
+        Set<String> constants = new HashSet<>();
+        for(Element e : kindsElement.getEnclosedElements()) {
+            if(e.getKind() == ElementKind.ENUM_CONSTANT) {
+                constants.add(e.getSimpleName().toString());
+            }
+        }
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(element);
+        String name = grammar.name().isEmpty() ? element.getSimpleName() + "Parser" : grammar.name();
+        GrammarModel model = new GrammarModel(element, pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString(),
+                name, ((TypeElement)kindsElement).getQualifiedName().toString());
+    
+        for(Element e : element.getEnclosedElements()) {
+            Prefix p = e.getAnnotation(Prefix.class);
+            Infix i = e.getAnnotation(Infix.class);
+            if(p == null && i == null) continue;
+            if(e.getKind() != ElementKind.FIELD) {
+                throw new GrammarException(e, "Only fields can be registered as parselets");
+            }
+            VariableElement field = (VariableElement)e;
+            Set<Modifier> modifiers = field.getModifiers();
+            if(!modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) {
+                throw new GrammarException(e, "Parselet fields must be static and not private");
+            }
+            String fieldName = field.getSimpleName().toString();
+            if(p != null) {
+                checkTypes(model, field, "PrefixParselet");
+                for(String k : p.value()) {
+                    checkKind(field, constants, k);
+                    if(model.prefix.put(k, fieldName) != null) {
+                        throw new GrammarException(e, "Duplicate prefix parselet for " + k);
+                    }
+                }
+            }
+            if(i != null) {
+                checkTypes(model, field, "InfixParselet");
+                for(String k : i.value()) {
+                    checkKind(field, constants, k);
+                    if(model.infix.put(k, fieldName) != null) {
+                        throw new GrammarException(e, "Duplicate infix parselet for " + k);
+                    }
+                    model.infixKindPrecedences.put(k, i.precedence());
+                }
+                model.infixPrecedences.put(fieldName, i.precedence());
+            }
+        }
+        if(model.prefix.isEmpty()) {
+            throw new GrammarException(element, "Grammar has no prefix parselets");
+        }
+        return model;
+    }
+    
+    private void checkKind(Element field, Set<String> constants, String kind) throws GrammarException {
+        if(!constants.contains(kind)) {
+            throw new GrammarException(field, "Unknown token kind " + kind);
+        }
+    }
+    
+    private void checkTypes(GrammarModel model, VariableElement field, String parseletType) throws GrammarException {
+        TypeElement target = processingEnv.getElementUtils().getTypeElement(PKG + parseletType);
+        DeclaredType type = asSuper(field.asType(), target);
+        if(type == null) {
+            throw new GrammarException(field, "Field must be a " + parseletType);
+        }
+        List<? extends TypeMirror> args = type.getTypeArguments();
+        if(args.size() != 2) {
+            throw new GrammarException(field, "Parselet fields must not use raw types");
+        }
+        for(TypeMirror arg : args) {
+            if(arg.getKind() != TypeKind.DECLARED && arg.getKind() != TypeKind.ARRAY) {
+                throw new GrammarException(field, "Parselet type arguments must be concrete types, got " + arg);
+            }
+        }
+        if(model.contextType == null) {
+            model.contextType = args.get(0);
+            model.resultType = args.get(1);
+            model.context = args.get(0).toString();
+            model.result = args.get(1).toString();
+        } else if(!processingEnv.getTypeUtils().isSameType(model.contextType, args.get(0)) ||
+                !processingEnv.getTypeUtils().isSameType(model.resultType, args.get(1))) {
+            throw new GrammarException(field, "All parselets of a grammar must have the same context and result types, expected <" +
+                    model.context + ", " + model.result + ">, got <" + args.get(0) + ", " + args.get(1) + ">");
+        }
+    }
+    
+    private DeclaredType asSuper(TypeMirror type, TypeElement target) {
+        if(type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        if(((DeclaredType)type).asElement().equals(target)) {
+            return (DeclaredType)type;
+        }
+        for(TypeMirror t : processingEnv.getTypeUtils().directSupertypes(type)) {
+            DeclaredType found = asSuper(t, target);
+            if(found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.natanbc.pratt;
+
+/**
+ * Features of the running JDK that change which code paths are fastest. This is the
+ * Java 21 version, loaded from the multi-release jar.
+ */
+final class Platform {
+    private Platform() {}
+    
+    static boolean fastStringDecoding() {
+        return true;
+    }
+}
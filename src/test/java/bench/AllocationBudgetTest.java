@@ -0,0 +1,55 @@
+package bench;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Fails when a hot path allocates more than its budget, so allocation regressions in
+ * the streams, lexers and parsers fail the build. Measurements and budgets come from
+ * {@link AllocationCheck}.
+ */
+public class AllocationBudgetTest {
+    @BeforeClass
+    public static void measurable() {
+        assumeTrue("Allocation measurement not supported by this JVM", AllocationCheck.supported());
+    }
+    
+    @Test
+    public void defaultCharacterStreamRead() {
+        assertWithinBudget(AllocationCheck.streamRead());
+    }
+    
+    @Test
+    public void lexerNext() {
+        assertWithinBudget(AllocationCheck.lexerNext());
+    }
+    
+    @Test
+    public void mathParser() {
+        assertWithinBudget(AllocationCheck.mathParser());
+    }
+    
+    @Test
+    public void arenaMathParser() {
+        assertWithinBudget(AllocationCheck.arenaParser());
+    }
+    
+    @Test
+    public void mathEventParser() {
+        assertWithinBudget(AllocationCheck.eventParser());
+    }
+    
+    @Test
+    public void discordParser() {
+        assertWithinBudget(AllocationCheck.discordParser());
+    }
+    
+    private static void assertWithinBudget(AllocationCheck.Check check) {
+        double perUnit = AllocationCheck.measure(check);
+        assertTrue(String.format("%s allocated %.1f bytes/%s, over its budget of %d", check.name, perUnit, check.unit, check.budget),
+                perUnit <= check.budget);
+    }
+}